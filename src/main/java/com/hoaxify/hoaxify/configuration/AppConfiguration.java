@@ -3,8 +3,12 @@ package com.hoaxify.hoaxify.configuration;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @ConfigurationProperties(prefix = "hoaxify")
@@ -16,6 +20,52 @@ public class AppConfiguration {
 
     String attachmentsFolder = "attachments";
 
+    /**
+     * Also the multipart file size limit; an upload is cut off as soon as it goes past this.
+     */
+    DataSize attachmentMaxSize = DataSize.ofMegabytes(10);
+
+    /**
+     * Distinguishes the ids generated by this instance from those of other nodes; see TimeOrderedIdGenerator. Left
+     * unset, it is 0, which is only allowed while the instance is not clustered.
+     */
+    Integer nodeId;
+
+    /**
+     * Set when several instances share the database; every instance must then be given its own nodeId, as two nodes
+     * with the same one would generate the same ids. The in-memory feed views (hot feed, count index, follow graph and
+     * home buffers) only see this instance's commits, so they are bypassed and the database is read instead; live
+     * streams poll the database for recent hoaxes, see {@link Stream#pollInterval}.
+     */
+    boolean clustered = false;
+
+    Auth auth = new Auth();
+
+    Feed feed = new Feed();
+
+    Stream stream = new Stream();
+
+    Write write = new Write();
+
+    Jobs jobs = new Jobs();
+
+    Storage storage = new Storage();
+
+    Cleanup cleanup = new Cleanup();
+
+    /**
+     * The node id to generate ids with; fails when a clustered instance has none configured.
+     */
+    public int resolveNodeId() {
+        if (nodeId != null) {
+            return nodeId;
+        }
+        if (clustered) {
+            throw new IllegalStateException("hoaxify.node-id must be set on every node when hoaxify.clustered is true");
+        }
+        return 0;
+    }
+
     public String getFullProfileImagesPath() {
         return this.uploadPath + "/" + this.profileImagesFolder;
     }
@@ -23,4 +73,167 @@ public class AppConfiguration {
     public String getFullAttachmentsPath() {
         return this.uploadPath + "/" + this.attachmentsFolder;
     }
+
+    @Data
+    public static class Auth {
+        Duration credentialCacheTtl = Duration.ofMinutes(5);
+
+        int credentialCacheSize = 10000;
+
+        String tokenSecret;
+
+        Duration tokenValidity = Duration.ofHours(24);
+
+        int passwordStrength = 10;
+
+        int hashThreads = Runtime.getRuntime().availableProcessors();
+
+        int hashQueueCapacity = 100;
+    }
+
+    @Data
+    public static class Feed {
+        int catchUpLimit = 100;
+
+        int streamLimit = 5000;
+
+        int indexCapacity = 10000;
+
+        int userIndexCapacity = 500;
+
+        int indexedUsers = 10000;
+
+        int hotFeedSize = 200;
+
+        int homeTimelineSize = 800;
+
+        int homeTimelines = 10000;
+
+        int fanOutLimit = 1000;
+
+        int followGraphSize = 10000;
+
+        int batchLimit = 500;
+    }
+
+    @Data
+    public static class Stream {
+        Duration timeout = Duration.ofMinutes(30);
+
+        Duration heartbeat = Duration.ofSeconds(15);
+
+        Duration reconnect = Duration.ofSeconds(3);
+
+        int bufferSize = 256;
+
+        int threads = 2;
+
+        /**
+         * How often a clustered instance looks for hoaxes committed on any node to push to its streams, which bounds
+         * how late they arrive.
+         */
+        Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * How far back each poll looks. Ids are taken when a hoax is saved, so one that commits later than this after
+         * its id was taken sorts below what has been polled and only reaches clients that reconnect.
+         */
+        Duration pollLag = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Write {
+        /**
+         * Routes single hoax creation through HoaxWriteQueue, which commits concurrent requests together.
+         */
+        boolean groupCommit = false;
+
+        int batchSize = 100;
+
+        Duration maxDelay = Duration.ofMillis(5);
+
+        int queueCapacity = 2000;
+
+        /**
+         * How long a caller waits for its batch to commit before it gives up with 503.
+         */
+        Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Jobs {
+        int threads = 2;
+
+        int batchSize = 50;
+
+        Duration pollInterval = Duration.ofSeconds(5);
+
+        int maxAttempts = 8;
+
+        Duration backoff = Duration.ofSeconds(1);
+
+        Duration maxBackoff = Duration.ofMinutes(10);
+
+        /**
+         * How long a node keeps a job it has claimed; a job whose node died meanwhile becomes due again after this.
+         */
+        Duration claimTtl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Storage {
+        /**
+         * local or s3.
+         */
+        String type = "local";
+
+        /**
+         * Root directories the local backend spreads files across; the upload path when empty.
+         */
+        List<String> stripes = new ArrayList<>();
+
+        /**
+         * Moves files of the old flat layout, and files left in another stripe after the stripes were changed, into
+         * their shard in the background after startup.
+         */
+        boolean migrate = true;
+
+        S3 s3 = new S3();
+    }
+
+    @Data
+    public static class S3 {
+        String endpoint;
+
+        String region = "us-east-1";
+
+        String bucket;
+
+        String accessKey;
+
+        String secretKey;
+
+        Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Cleanup {
+        /**
+         * Orphaned attachments handled per transaction; a restart resumes after the last committed chunk.
+         */
+        int chunkSize = 1000;
+
+        int threads = 4;
+
+        /**
+         * Orphans are split into this many partitions, each run under its own lease, so several nodes can share a
+         * large backlog.
+         */
+        int partitions = 4;
+
+        /**
+         * How long a partition stays locked after its node stopped renewing the lease, say because it crashed.
+         */
+        Duration leaseTtl = Duration.ofMinutes(10);
+    }
 }
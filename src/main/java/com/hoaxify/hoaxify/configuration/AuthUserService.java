@@ -4,12 +4,13 @@ import com.hoaxify.hoaxify.user.User;
 import com.hoaxify.hoaxify.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class AuthUserService implements UserDetailsService {
+public class AuthUserService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     UserRepository userRepository;
@@ -22,4 +23,12 @@ public class AuthUserService implements UserDetailsService {
         }
         return user;
     }
+
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        // only the cost of the hash changes, not the password, so tokens issued before stay valid
+        User user = (User) userDetails;
+        user.rehashPassword(newPassword);
+        return userRepository.save(user);
+    }
 }
@@ -0,0 +1,9 @@
+package com.hoaxify.hoaxify.configuration;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+public class AuthenticationOverloadedException extends InternalAuthenticationServiceException {
+    public AuthenticationOverloadedException(String message) {
+        super(message);
+    }
+}
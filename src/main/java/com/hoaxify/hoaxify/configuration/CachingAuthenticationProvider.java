@@ -0,0 +1,75 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import com.hoaxify.hoaxify.user.User;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    VerifiedCredentialCache verifiedCredentialCache;
+
+    PasswordHashExecutor passwordHashExecutor;
+
+    public CachingAuthenticationProvider(VerifiedCredentialCache verifiedCredentialCache, PasswordHashExecutor passwordHashExecutor) {
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        this.passwordHashExecutor = passwordHashExecutor;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (authentication.getCredentials() == null) {
+            return super.authenticate(authentication);
+        }
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf(authentication.getName(), authentication.getCredentials().toString());
+        AuthenticatedUser cached = verifiedCredentialCache.get(key);
+        if (cached != null) {
+            checkAccount(authentication.getName());
+            UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(cached, authentication.getCredentials(), cached.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+        Authentication result = passwordHashExecutor.execute(() -> super.authenticate(authentication));
+        if (result.getPrincipal() instanceof AuthenticatedUser) {
+            verifiedCredentialCache.put(key, (AuthenticatedUser) result.getPrincipal());
+        }
+        return result;
+    }
+
+    /**
+     * A cache hit skips only the password hash: the account is loaded and checked as on a miss, so one disabled or
+     * locked since its password was verified is refused.
+     */
+    private void checkAccount(String username) {
+        UserDetails user;
+        try {
+            user = getUserDetailsService().loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException(
+                    messages.getMessage("AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+        }
+        getPreAuthenticationChecks().check(user);
+        getPostAuthenticationChecks().check(user);
+    }
+
+    /**
+     * The principal is converted only after super has had the chance to rehash the password, so the cached principal
+     * is the user as saved.
+     */
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        Authentication result = super.createSuccessAuthentication(principal, authentication, user);
+        if (!(principal instanceof User)) {
+            return result;
+        }
+        UsernamePasswordAuthenticationToken converted = new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser((User) principal), result.getCredentials(), result.getAuthorities());
+        converted.setDetails(result.getDetails());
+        return converted;
+    }
+}
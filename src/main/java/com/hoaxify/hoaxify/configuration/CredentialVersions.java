@@ -0,0 +1,77 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import com.hoaxify.hoaxify.user.UserChangedEvent;
+import com.hoaxify.hoaxify.user.UserRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches each user's current credential version, which a token has to carry to be accepted. Changing a password
+ * bumps the version and so revokes every token issued before. Entries are dropped when the user changes on this node
+ * and expire after the credential cache TTL, which bounds how long another node keeps accepting a revoked token.
+ */
+@Component
+public class CredentialVersions {
+
+    private static final long UNKNOWN_USER = -1;
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    private final Map<Long, Entry> entries;
+
+    UserRepository userRepository;
+
+    public CredentialVersions(UserRepository userRepository, AppConfiguration appConfiguration) {
+        this.userRepository = userRepository;
+        this.ttlMillis = appConfiguration.getAuth().getCredentialCacheTtl().toMillis();
+        this.maxSize = appConfiguration.getAuth().getCredentialCacheSize();
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public boolean isCurrent(AuthenticatedUser user) {
+        return currentVersion(user.getId()) == user.getCredentialVersion();
+    }
+
+    private long currentVersion(long userId) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expiresAt >= System.currentTimeMillis()) {
+                return entry.version;
+            }
+        }
+        long version = userRepository.findCredentialVersion(userId).orElse(UNKNOWN_USER);
+        synchronized (entries) {
+            entries.put(userId, new Entry(version, System.currentTimeMillis() + ttlMillis));
+        }
+        return version;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (entries) {
+            entries.remove(event.getId());
+        }
+    }
+
+    private static class Entry {
+        final long version;
+
+        final long expiresAt;
+
+        Entry(long version, long expiresAt) {
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hoaxify.hoaxify.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Component
+public class PasswordHashExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer hashTimer;
+
+    private final Counter rejected;
+
+    public PasswordHashExecutor(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        int threads = Math.max(1, appConfiguration.getAuth().getHashThreads());
+        int queueCapacity = Math.max(1, appConfiguration.getAuth().getHashQueueCapacity());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.hashTimer = Timer.builder("hoaxify.auth.hash").register(meterRegistry);
+        this.rejected = Counter.builder("hoaxify.auth.hash.rejected").register(meterRegistry);
+        Gauge.builder("hoaxify.auth.hash.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("hoaxify.auth.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> task) throws AuthenticationException {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> hashTimer.record(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationOverloadedException("Authentication is temporarily unavailable");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new InternalAuthenticationServiceException("Authentication was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthenticationException) {
+                throw (AuthenticationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new InternalAuthenticationServiceException(cause.getMessage(), cause);
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
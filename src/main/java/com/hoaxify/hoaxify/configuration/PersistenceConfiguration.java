@@ -0,0 +1,25 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PersistenceConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceConfiguration.class);
+
+    /**
+     * Resolved before Hibernate starts, so a clustered node without a node id fails at startup rather than generating
+     * ids another node may also generate.
+     */
+    @Bean
+    HibernatePropertiesCustomizer nodeIdCustomizer(AppConfiguration appConfiguration) {
+        int nodeId = appConfiguration.resolveNodeId();
+        log.info("Generating ids as node {}", nodeId);
+        return properties -> properties.put(TimeOrderedIdentifierGenerator.NODE_ID_SETTING, String.valueOf(nodeId));
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -18,18 +19,37 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Autowired
     AuthUserService authUserService;
 
+    @Autowired
+    VerifiedCredentialCache verifiedCredentialCache;
+
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    PasswordHashExecutor passwordHashExecutor;
+
+    @Autowired
+    CredentialVersions credentialVersions;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.csrf().disable();
 
         http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
 
+        http.addFilterBefore(new TokenAuthenticationFilter(tokenService, credentialVersions), BasicAuthenticationFilter.class);
+
         http
                 .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/1.0/login").authenticated()
                 .antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}").authenticated()
                 .antMatchers(HttpMethod.POST, "/api/1.0/hoaxes/**").authenticated()
                 .antMatchers(HttpMethod.DELETE, "/api/1.0/hoaxes/{id:[0-9]+}").authenticated()
+                .antMatchers("/api/1.0/users/*/follow").authenticated()
+                .antMatchers(HttpMethod.GET, "/api/1.0/hoaxes/home").authenticated()
 
                 .and()
                 .authorizeRequests().anyRequest().permitAll();
@@ -39,11 +59,15 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
+        CachingAuthenticationProvider authenticationProvider = new CachingAuthenticationProvider(verifiedCredentialCache, passwordHashExecutor);
+        authenticationProvider.setUserDetailsService(authUserService);
+        authenticationProvider.setUserDetailsPasswordService(authUserService);
+        authenticationProvider.setPasswordEncoder(passwordEncoder());
+        auth.authenticationProvider(authenticationProvider);
     }
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(appConfiguration.getAuth().getPasswordStrength());
     }
 }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.hoaxify.hoaxify.shared.CursorPage;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.Page;
@@ -36,4 +37,23 @@ public class SerializationConfiguration {
         };
         return new SimpleModule().addSerializer(Page.class, pageJsonSerializer);
     }
+
+    @Bean
+    public Module cursorPageModule() {
+        JsonSerializer<CursorPage> cursorPageJsonSerializer = new JsonSerializer<CursorPage>() {
+            @Override
+            public void serialize(CursorPage page, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeNumberField("numberOfElements", page.getContent().size());
+                jsonGenerator.writeNumberField("size", page.getSize());
+                jsonGenerator.writeBooleanField("last", !page.hasNext());
+                jsonGenerator.writeStringField("next", page.getNext());
+
+                jsonGenerator.writeFieldName("content");
+                serializerProvider.defaultSerializeValue(page.getContent(), jsonGenerator);
+                jsonGenerator.writeEndObject();
+            }
+        };
+        return new SimpleModule().addSerializer(CursorPage.class, cursorPageJsonSerializer);
+    }
 }
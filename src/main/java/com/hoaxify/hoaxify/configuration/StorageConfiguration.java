@@ -0,0 +1,20 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.file.LocalStorageBackend;
+import com.hoaxify.hoaxify.file.S3StorageBackend;
+import com.hoaxify.hoaxify.file.StorageBackend;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageConfiguration {
+
+    @Bean
+    StorageBackend storageBackend(AppConfiguration appConfiguration) {
+        AppConfiguration.Storage storage = appConfiguration.getStorage();
+        if ("s3".equalsIgnoreCase(storage.getType())) {
+            return new S3StorageBackend(storage.getS3());
+        }
+        return new LocalStorageBackend(appConfiguration.getUploadPath(), storage.getStripes());
+    }
+}
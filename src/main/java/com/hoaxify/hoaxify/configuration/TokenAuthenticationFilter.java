@@ -0,0 +1,51 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String LOGIN_PATH = "/api/1.0/login";
+
+    TokenService tokenService;
+
+    CredentialVersions credentialVersions;
+
+    public TokenAuthenticationFilter(TokenService tokenService, CredentialVersions credentialVersions) {
+        this.tokenService = tokenService;
+        this.credentialVersions = credentialVersions;
+    }
+
+    /**
+     * Login needs the password, so that a stolen token cannot be renewed into new ones.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return LOGIN_PATH.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            AuthenticatedUser user = tokenService.verify(header.substring(BEARER_PREFIX.length()).trim());
+            if (user != null && credentialVersions.isCurrent(user)) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,114 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+@Service
+public class TokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * HMAC-SHA256 keys shorter than its output weaken the signature.
+     */
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private final SecretKeySpec key;
+
+    private final long validityMillis;
+
+    private final ObjectMapper objectMapper;
+
+    public TokenService(AppConfiguration appConfiguration, ObjectMapper objectMapper) {
+        this.key = new SecretKeySpec(resolveSecret(appConfiguration), HMAC_ALGORITHM);
+        this.validityMillis = appConfiguration.getAuth().getTokenValidity().toMillis();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Without a configured secret, a single node signs with a random key of its own; its tokens then end with the
+     * process. Every node of a cluster has to verify the others' tokens, so there the secret is required.
+     */
+    private static byte[] resolveSecret(AppConfiguration appConfiguration) {
+        String secret = appConfiguration.getAuth().getTokenSecret();
+        if (secret == null || secret.isEmpty()) {
+            if (appConfiguration.isClustered()) {
+                throw new IllegalStateException("hoaxify.auth.token-secret must be set on every node when hoaxify.clustered is true");
+            }
+            byte[] secretBytes = new byte[MIN_SECRET_LENGTH];
+            new SecureRandom().nextBytes(secretBytes);
+            return secretBytes;
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("hoaxify.auth.token-secret must be at least " + MIN_SECRET_LENGTH + " bytes long");
+        }
+        return secretBytes;
+    }
+
+    public String issue(AuthenticatedUser user) {
+        ObjectNode claims = objectMapper.createObjectNode();
+        claims.put("sub", user.getId());
+        claims.put("usr", user.getUsername());
+        claims.put("name", user.getDisplayName());
+        claims.put("ver", user.getCredentialVersion());
+        claims.put("exp", System.currentTimeMillis() + validityMillis);
+        try {
+            String payload = encode(objectMapper.writeValueAsBytes(claims));
+            return payload + "." + encode(sign(payload));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public AuthenticatedUser verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        String payload = token.substring(0, separator);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(payload));
+            if (claims.path("exp").asLong() < System.currentTimeMillis()) {
+                return null;
+            }
+            return new AuthenticatedUser(
+                    claims.path("sub").asLong(),
+                    claims.path("usr").asText(),
+                    claims.path("name").asText(null),
+                    claims.path("ver").asLong());
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,128 @@
+package com.hoaxify.hoaxify.configuration;
+
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import com.hoaxify.hoaxify.user.UserChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class VerifiedCredentialCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    private final Map<Key, Entry> entries;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public VerifiedCredentialCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.ttlMillis = appConfiguration.getAuth().getCredentialCacheTtl().toMillis();
+        this.maxSize = appConfiguration.getAuth().getCredentialCacheSize();
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = Counter.builder("hoaxify.auth.credential.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hoaxify.auth.credential.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("hoaxify.auth.credential.cache.size", this, VerifiedCredentialCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Keys on the username and a keyed digest of the password kept apart, so no two credential pairs share a key and the
+     * password is never held in plain text.
+     */
+    public Key keyOf(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            return new Key(username, Base64.getEncoder().encodeToString(digest));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public AuthenticatedUser get(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    public void put(Key key, AuthenticatedUser principal) {
+        Entry entry = new Entry(principal, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.principal.getUsername().equals(username));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUsername());
+    }
+
+    @Value
+    public static class Key {
+        String username;
+
+        String passwordDigest;
+    }
+
+    private static class Entry {
+        final AuthenticatedUser principal;
+
+        final long expiresAt;
+
+        Entry(AuthenticatedUser principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
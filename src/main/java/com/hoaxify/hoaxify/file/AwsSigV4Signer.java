@@ -0,0 +1,128 @@
+package com.hoaxify.hoaxify.file;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Signs S3 requests with AWS Signature Version 4 in the Authorization header. Query strings are not supported, as the
+ * storage backend does not use them.
+ */
+public class AwsSigV4Signer {
+
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    public static final String EMPTY_PAYLOAD = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final String SERVICE = "s3";
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    private final String region;
+
+    public AwsSigV4Signer(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * Adds the {@code x-amz-date}, {@code x-amz-content-sha256} and {@code Authorization} headers for the request to
+     * {@code headers}, which must already hold every other header to be signed. Host is always signed.
+     */
+    public void sign(String method, URL url, Map<String, String> headers, String payloadHash, Instant now) {
+        String dateTime = DATE_TIME.format(now);
+        String date = dateTime.substring(0, 8);
+        headers.put("x-amz-date", dateTime);
+        headers.put("x-amz-content-sha256", payloadHash);
+
+        SortedMap<String, String> signed = new TreeMap<>();
+        signed.put("host", url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort());
+        headers.forEach((name, value) -> signed.put(name.toLowerCase(), value.trim()));
+        StringBuilder canonicalHeaders = new StringBuilder();
+        signed.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value).append('\n'));
+        String signedHeaders = String.join(";", signed.keySet());
+
+        String canonicalRequest = method + "\n"
+                + canonicalUri(url.getPath()) + "\n"
+                + "\n"
+                + canonicalHeaders + "\n"
+                + signedHeaders + "\n"
+                + payloadHash;
+        String scope = date + "/" + region + "/" + SERVICE + "/aws4_request";
+        String stringToSign = ALGORITHM + "\n" + dateTime + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, SERVICE);
+        key = hmac(key, "aws4_request");
+        String signature = hex(hmac(key, stringToSign));
+
+        headers.put("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    /**
+     * URI-encodes every path segment, as S3 expects, leaving the slashes in place.
+     */
+    static String canonicalUri(String path) {
+        if (path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder uri = new StringBuilder(path.length());
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || c == '/') {
+                uri.append(c);
+            } else {
+                uri.append('%').append(Character.toUpperCase(HEX[(b >> 4) & 0xF])).append(Character.toUpperCase(HEX[b & 0xF]));
+            }
+        }
+        return uri.toString();
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,214 @@
+package com.hoaxify.hoaxify.file;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reference counts for content-addressed files, named by the hex SHA-256 of their bytes. Uploading content that is
+ * already stored only adds a reference, and the bytes are deleted once the last reference is released.
+ * <p>
+ * Uploads write the bytes before any transaction is opened, so a slow store never holds a database connection or row
+ * lock. The reference is then taken in the transaction that saves whatever points at the bytes, so a rolled back
+ * upload leaves no count behind. Until it commits, that transaction holds the lock of the content row, and
+ * {@link #deleteIfUnreferenced} deletes bytes only while it holds the row lock and the count is zero, leaving names
+ * without a row alone. An upload whose bytes were deleted between the write and the reference sees them missing under
+ * the lock and writes them again.
+ */
+@Component
+public class ContentStore {
+
+    private static final int NAME_LENGTH = 64;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter bytesSaved;
+
+    FileContentRepository fileContentRepository;
+
+    StorageBackend storageBackend;
+
+    public ContentStore(FileContentRepository fileContentRepository, StorageBackend storageBackend,
+                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.fileContentRepository = fileContentRepository;
+        this.storageBackend = storageBackend;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hits = Counter.builder("hoaxify.storage.dedup").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hoaxify.storage.dedup").tag("result", "miss").register(meterRegistry);
+        this.bytesSaved = Counter.builder("hoaxify.storage.dedup.saved").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("hoaxify.storage.dedup.ratio", this, ContentStore::dedupRatio).register(meterRegistry);
+    }
+
+    /**
+     * The share of uploads that were already stored.
+     */
+    private double dedupRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * Content names are hex SHA-256 hashes; files uploaded before deduplication have random names of another length
+     * and no reference count.
+     */
+    static boolean isContentName(String name) {
+        if (name.length() != NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a reference to the content in the caller's transaction and returns true if the caller has to check that the
+     * bytes are stored and describe them: either the content is new or its bytes have gone missing.
+     * <p>
+     * When another transaction inserts the same new content at the same time, one of the two fails here with a
+     * {@link DataIntegrityViolationException} on the unique key. That transaction can no longer commit; run again by
+     * {@link #inTransaction}, it finds the other's row and takes a reference to it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean acquire(String folder, String name, long size) {
+        if (fileContentRepository.incrementRefCount(folder, name) > 0) {
+            if (exists(folder, name)) {
+                hits.increment();
+                bytesSaved.increment(size);
+                return false;
+            }
+            misses.increment();
+            return true;
+        }
+        fileContentRepository.saveAndFlush(new FileContent(folder, name, size));
+        misses.increment();
+        return true;
+    }
+
+    /**
+     * Runs the action in a new transaction, and once more if it failed because a concurrent transaction inserted the
+     * same new content first; see {@link #acquire}. Has to be called outside of any transaction, which a failed attempt
+     * would have marked rollback-only.
+     */
+    public <T> T inTransaction(TransactionCallback<T> action) {
+        try {
+            return transactionTemplate.execute(action);
+        } catch (DataIntegrityViolationException e) {
+            // the other transaction has committed its row by now, so this attempt takes a reference to it
+            return transactionTemplate.execute(action);
+        }
+    }
+
+    /**
+     * Records how the stored bytes are served: their content type and whether a gzip copy sits next to them.
+     */
+    public void describe(String folder, String name, String contentType, boolean compressed) {
+        fileContentRepository.describe(folder, name, contentType, compressed);
+    }
+
+    /**
+     * Returns the content row of a content-addressed file, or empty for a legacy file that has none.
+     */
+    public Optional<FileContent> find(String folder, String name) {
+        if (!isContentName(name)) {
+            return Optional.empty();
+        }
+        return fileContentRepository.findDescription(folder, name);
+    }
+
+    private boolean exists(String folder, String name) {
+        try {
+            return storageBackend.find(folder, name) != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes a reference in the caller's transaction and returns true if the bytes may have to be deleted, which
+     * {@link #deleteIfUnreferenced} does after that transaction has committed.
+     */
+    public boolean release(String folder, String name) {
+        if (fileContentRepository.decrementRefCount(folder, name) == 0) {
+            return !isContentName(name);
+        }
+        return fileContentRepository.findRefCount(folder, name).map(count -> count == 0).orElse(false);
+    }
+
+    /**
+     * Removes one reference per occurrence of a name, with one statement per distinct number of occurrences, and
+     * returns the names whose bytes may have to be deleted; see {@link #release}.
+     */
+    public Set<String> releaseAll(String folder, Collection<String> names) {
+        Map<String, Integer> references = new HashMap<>();
+        for (String name : names) {
+            references.merge(name, 1, Integer::sum);
+        }
+        Map<Integer, List<String>> namesByCount = new HashMap<>();
+        Set<String> unreferenced = new HashSet<>();
+        List<String> contentNames = new ArrayList<>();
+        references.forEach((name, count) -> {
+            if (isContentName(name)) {
+                namesByCount.computeIfAbsent(count, c -> new ArrayList<>()).add(name);
+                contentNames.add(name);
+            } else {
+                unreferenced.add(name);
+            }
+        });
+        if (contentNames.isEmpty()) {
+            return unreferenced;
+        }
+        namesByCount.forEach((count, countedNames) -> fileContentRepository.decrementRefCounts(folder, countedNames, count));
+        unreferenced.addAll(fileContentRepository.findUnreferenced(folder, contentNames));
+        return unreferenced;
+    }
+
+    /**
+     * Deletes the bytes, and their gzip copy, if nothing references them any more, and returns whether it did.
+     */
+    public boolean deleteIfUnreferenced(String folder, String name) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                Optional<FileContent> content = fileContentRepository.findByFolderAndName(folder, name);
+                if (content.isPresent() ? content.get().getRefCount() > 0 : isContentName(name)) {
+                    return false;
+                }
+                try {
+                    storageBackend.delete(folder, name);
+                    storageBackend.delete(folder, name + FileService.PRECOMPRESSED_SUFFIX);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                content.ifPresent(fileContentRepository::delete);
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.hoaxify.hoaxify.file;
 
 import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.util.Date;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_file_attachment_hoax_date", columnList = "hoax_id, date, id"))
 public class FileAttachment {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
     private long id;
 
     @Temporal(TemporalType.TIMESTAMP)
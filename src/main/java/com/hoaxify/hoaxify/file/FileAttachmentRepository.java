@@ -1,10 +1,46 @@
 package com.hoaxify.hoaxify.file;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
     List<FileAttachment> findByDateBeforeAndHoaxIsNull(Date date);
+
+    /**
+     * Orphans are partitioned by the millisecond their id was generated at; the low bits of an id are mostly zero.
+     */
+    @Query("select a from FileAttachment a where a.hoax is null and a.date < :before"
+            + " and mod(a.id / :idsPerMillisecond, :partitions) = :partition order by a.date, a.id")
+    List<FileAttachment> findOrphans(@Param("before") Date before, @Param("idsPerMillisecond") long idsPerMillisecond,
+                                     @Param("partitions") int partitions, @Param("partition") int partition,
+                                     Pageable pageable);
+
+    /**
+     * The orphans that come after the given one in (date, id) order, so each chunk starts where the last one ended.
+     */
+    @Query("select a from FileAttachment a where a.hoax is null and a.date < :before"
+            + " and mod(a.id / :idsPerMillisecond, :partitions) = :partition"
+            + " and (a.date > :date or (a.date = :date and a.id > :id)) order by a.date, a.id")
+    List<FileAttachment> findOrphansAfter(@Param("before") Date before, @Param("idsPerMillisecond") long idsPerMillisecond,
+                                          @Param("partitions") int partitions, @Param("partition") int partition,
+                                          @Param("date") Date date, @Param("id") long id, Pageable pageable);
+
+    @Modifying
+    @Query("delete from FileAttachment a where a.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.name from FileAttachment a where a.hoax.id = :hoaxId and a.hoax.user.id = :userId")
+    Optional<String> findNameByHoaxIdAndUserId(@Param("hoaxId") long hoaxId, @Param("userId") long userId);
+
+    @Modifying
+    @Query("delete from FileAttachment a where a.hoax.id = :hoaxId")
+    int deleteByHoaxId(@Param("hoaxId") long hoaxId);
 }
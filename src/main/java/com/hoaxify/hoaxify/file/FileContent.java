@@ -0,0 +1,60 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Stored bytes named by their SHA-256, shared by every upload with the same content, and how many attachments or
+ * profile images point at them. The bytes are deleted when the count drops to zero; see {@link ContentStore}.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "file_content", uniqueConstraints = @UniqueConstraint(name = "uk_file_content_folder_name", columnNames = {"folder", "name"}))
+public class FileContent {
+
+    @Id
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
+    private long id;
+
+    @Column(nullable = false)
+    private String folder;
+
+    @Column(nullable = false, length = 64)
+    private String name;
+
+    private long size;
+
+    private int refCount;
+
+    /**
+     * The type the bytes are served with, recorded once they are stored so that serving them needs no sniffing; null
+     * for content stored before it was recorded.
+     */
+    @Column(length = 100)
+    private String contentType;
+
+    /**
+     * Whether a gzip copy was stored next to the bytes.
+     */
+    @ColumnDefault("false")
+    private boolean compressed;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    public FileContent(String folder, String name, long size) {
+        this.folder = folder;
+        this.name = name;
+        this.size = size;
+        this.refCount = 1;
+        this.createdAt = new Date();
+    }
+}
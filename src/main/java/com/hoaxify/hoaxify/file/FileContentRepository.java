@@ -0,0 +1,51 @@
+package com.hoaxify.hoaxify.file;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileContentRepository extends JpaRepository<FileContent, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("update FileContent c set c.refCount = c.refCount + 1 where c.folder = :folder and c.name = :name")
+    int incrementRefCount(@Param("folder") String folder, @Param("name") String name);
+
+    @Transactional
+    @Modifying
+    @Query("update FileContent c set c.refCount = c.refCount - 1 where c.folder = :folder and c.name = :name and c.refCount > 0")
+    int decrementRefCount(@Param("folder") String folder, @Param("name") String name);
+
+    @Modifying
+    @Query("update FileContent c set c.refCount = c.refCount - :count"
+            + " where c.folder = :folder and c.name in :names and c.refCount >= :count")
+    int decrementRefCounts(@Param("folder") String folder, @Param("names") Collection<String> names,
+                           @Param("count") int count);
+
+    @Query("select c.name from FileContent c where c.folder = :folder and c.name in :names and c.refCount = 0")
+    List<String> findUnreferenced(@Param("folder") String folder, @Param("names") Collection<String> names);
+
+    @Query("select c.refCount from FileContent c where c.folder = :folder and c.name = :name")
+    Optional<Integer> findRefCount(@Param("folder") String folder, @Param("name") String name);
+
+    @Transactional
+    @Modifying
+    @Query("update FileContent c set c.contentType = :contentType, c.compressed = :compressed"
+            + " where c.folder = :folder and c.name = :name")
+    int describe(@Param("folder") String folder, @Param("name") String name,
+                 @Param("contentType") String contentType, @Param("compressed") boolean compressed);
+
+    @Query("select c from FileContent c where c.folder = :folder and c.name = :name")
+    Optional<FileContent> findDescription(@Param("folder") String folder, @Param("name") String name);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<FileContent> findByFolderAndName(String folder, String name);
+}
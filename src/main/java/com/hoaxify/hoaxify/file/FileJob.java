@@ -0,0 +1,55 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A file operation that runs after the request that caused it. The row is written in the caller's transaction, so a
+ * job exists exactly when the change that needs it has committed; it is deleted once it succeeds.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "file_job", indexes = @Index(name = "idx_file_job_status_run_at", columnList = "status, run_at"))
+public class FileJob {
+
+    @Id
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private FileJobType type;
+
+    @Column(nullable = false)
+    private String target;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private FileJobStatus status = FileJobStatus.PENDING;
+
+    private int attempts;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "run_at")
+    private Date runAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    public FileJob(FileJobType type, String target) {
+        this.type = type;
+        this.target = target;
+        this.createdAt = new Date();
+        this.runAt = this.createdAt;
+    }
+}
@@ -0,0 +1,219 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link FileJob}s off the request thread. Jobs are picked up right after the transaction that submitted them
+ * commits, and by a periodic poll that also catches jobs left over from a restart. A failed job is retried with
+ * exponential backoff and is marked {@link FileJobStatus#DEAD} after {@code maxAttempts}.
+ */
+@Component
+public class FileJobQueue {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ScheduledExecutorService poller;
+
+    private final ExecutorService workers;
+
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+
+    private final AtomicLong pendingJobs = new AtomicLong();
+
+    private final AtomicLong deadJobs = new AtomicLong();
+
+    private final Timer latency;
+
+    private final Counter completed;
+
+    private final Counter retried;
+
+    private final Counter failed;
+
+    FileJobRepository fileJobRepository;
+
+    AppConfiguration appConfiguration;
+
+    ApplicationEventPublisher eventPublisher;
+
+    ContentStore contentStore;
+
+    public FileJobQueue(FileJobRepository fileJobRepository, AppConfiguration appConfiguration,
+                        ApplicationEventPublisher eventPublisher, ContentStore contentStore, MeterRegistry meterRegistry) {
+        this.fileJobRepository = fileJobRepository;
+        this.contentStore = contentStore;
+        this.appConfiguration = appConfiguration;
+        this.eventPublisher = eventPublisher;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "file-job-poller"));
+        this.workers = Executors.newFixedThreadPool(Math.max(1, appConfiguration.getJobs().getThreads()),
+                runnable -> daemon(runnable, "file-job-" + threadCount.incrementAndGet()));
+        this.latency = Timer.builder("hoaxify.file.jobs.latency").register(meterRegistry);
+        this.completed = Counter.builder("hoaxify.file.jobs").tag("result", "done").register(meterRegistry);
+        this.retried = Counter.builder("hoaxify.file.jobs").tag("result", "retry").register(meterRegistry);
+        this.failed = Counter.builder("hoaxify.file.jobs").tag("result", "dead").register(meterRegistry);
+        Gauge.builder("hoaxify.file.jobs.pending", pendingJobs, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("hoaxify.file.jobs.dead", deadJobs, AtomicLong::get).register(meterRegistry);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Records the job in the current transaction, if any; it runs once that transaction commits.
+     */
+    public void submit(FileJobType type, String target) {
+        FileJob job = fileJobRepository.save(new FileJob(type, target));
+        eventPublisher.publishEvent(new FileJobSubmittedEvent(job.getId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onJobSubmitted(FileJobSubmittedEvent event) {
+        if (!wakeUpScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            poller.execute(() -> {
+                wakeUpScheduled.set(false);
+                runDueJobsQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeUpScheduled.set(false);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = appConfiguration.getJobs().getPollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::runDueJobsQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void runDueJobsQuietly() {
+        try {
+            runDueJobs();
+        } catch (RuntimeException e) {
+            // the next poll tries again; the jobs are still in the table
+        }
+    }
+
+    /**
+     * Runs every job that is due on the worker pool and returns how many ran. Each job is claimed with a conditional
+     * update before it runs, so when several nodes poll the same table a job still runs on only one of them; within
+     * a node, batches run one after another.
+     */
+    public synchronized int runDueJobs() {
+        AppConfiguration.Jobs jobs = appConfiguration.getJobs();
+        int batchSize = Math.max(1, jobs.getBatchSize());
+        int ran = 0;
+        while (true) {
+            Date now = new Date();
+            Date claimedUntil = new Date(now.getTime() + jobs.getClaimTtl().toMillis());
+            List<FileJob> due = fileJobRepository.findDue(now, PageRequest.of(0, batchSize));
+            List<Future<?>> running = new ArrayList<>(due.size());
+            for (FileJob job : due) {
+                if (fileJobRepository.claim(job.getId(), now, claimedUntil) == 0) {
+                    // claimed by another node
+                    continue;
+                }
+                running.add(workers.submit(() -> run(job)));
+            }
+            for (Future<?> future : running) {
+                awaitQuietly(future);
+            }
+            ran += running.size();
+            if (due.size() < batchSize || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        pendingJobs.set(fileJobRepository.countByStatus(FileJobStatus.PENDING));
+        deadJobs.set(fileJobRepository.countByStatus(FileJobStatus.DEAD));
+        return ran;
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // run() records its own failures; anything else is retried by the next poll
+        }
+    }
+
+    private void run(FileJob job) {
+        try {
+            execute(job);
+        } catch (IOException | RuntimeException e) {
+            fail(job, e);
+            return;
+        }
+        fileJobRepository.deleteJob(job.getId());
+        latency.record(System.currentTimeMillis() - job.getCreatedAt().getTime(), TimeUnit.MILLISECONDS);
+        completed.increment();
+    }
+
+    private void execute(FileJob job) throws IOException {
+        switch (job.getType()) {
+            case DELETE_ATTACHMENT:
+                contentStore.deleteIfUnreferenced(appConfiguration.getAttachmentsFolder(), job.getTarget());
+                break;
+            case DELETE_PROFILE_IMAGE:
+                contentStore.deleteIfUnreferenced(appConfiguration.getProfileImagesFolder(), job.getTarget());
+                break;
+            default:
+                throw new IllegalStateException("Unknown file job type " + job.getType());
+        }
+    }
+
+    private void fail(FileJob job, Exception e) {
+        AppConfiguration.Jobs jobs = appConfiguration.getJobs();
+        job.setAttempts(job.getAttempts() + 1);
+        String error = String.valueOf(e);
+        job.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (job.getAttempts() >= jobs.getMaxAttempts()) {
+            job.setStatus(FileJobStatus.DEAD);
+            failed.increment();
+        } else {
+            long backoff = jobs.getBackoff().toMillis() << Math.min(job.getAttempts() - 1, 20);
+            job.setRunAt(new Date(System.currentTimeMillis() + Math.min(backoff, jobs.getMaxBackoff().toMillis())));
+            retried.increment();
+        }
+        fileJobRepository.save(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        workers.shutdownNow();
+    }
+}
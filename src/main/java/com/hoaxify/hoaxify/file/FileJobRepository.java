@@ -0,0 +1,33 @@
+package com.hoaxify.hoaxify.file;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+public interface FileJobRepository extends JpaRepository<FileJob, Long> {
+
+    @Query("select j from FileJob j where j.status = com.hoaxify.hoaxify.file.FileJobStatus.PENDING and j.runAt <= :now order by j.runAt")
+    List<FileJob> findDue(@Param("now") Date now, Pageable pageable);
+
+    long countByStatus(FileJobStatus status);
+
+    /**
+     * Claims a due job by moving its run time to {@code until}. However many nodes try at once, only one of them gets
+     * 1; if that node dies while running the job, the job is due again at {@code until}.
+     */
+    @Transactional
+    @Modifying
+    @Query("update FileJob j set j.runAt = :until where j.id = :id and j.status = com.hoaxify.hoaxify.file.FileJobStatus.PENDING and j.runAt <= :now")
+    int claim(@Param("id") long id, @Param("now") Date now, @Param("until") Date until);
+
+    @Transactional
+    @Modifying
+    @Query("delete from FileJob j where j.id = :id")
+    int deleteJob(@Param("id") long id);
+}
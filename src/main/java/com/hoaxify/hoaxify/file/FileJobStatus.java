@@ -0,0 +1,9 @@
+package com.hoaxify.hoaxify.file;
+
+public enum FileJobStatus {
+    PENDING,
+    /**
+     * Failed {@code maxAttempts} times; kept with its last error for inspection and not retried.
+     */
+    DEAD
+}
@@ -0,0 +1,8 @@
+package com.hoaxify.hoaxify.file;
+
+import lombok.Value;
+
+@Value
+public class FileJobSubmittedEvent {
+    long id;
+}
@@ -0,0 +1,6 @@
+package com.hoaxify.hoaxify.file;
+
+public enum FileJobType {
+    DELETE_ATTACHMENT,
+    DELETE_PROFILE_IMAGE
+}
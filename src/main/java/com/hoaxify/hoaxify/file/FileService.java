@@ -1,92 +1,548 @@
 package com.hoaxify.hoaxify.file;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
-import org.apache.commons.io.FileUtils;
-import org.apache.tika.Tika;
+import com.hoaxify.hoaxify.error.PayloadTooLargeException;
+import com.hoaxify.hoaxify.hoax.HoaxTimeline;
+import com.hoaxify.hoaxify.shared.JobLeases;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.IOUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 @EnableScheduling
 public class FileService {
+
+    /**
+     * Tika's magic detection never looks further than this, should the signature be an unknown one; the same array
+     * is then reused as the copy buffer.
+     */
+    private static final int DETECTION_BYTES = 64 * 1024;
+
+    /**
+     * Suffix of the gzip copy kept next to a compressible attachment; see ImageController.
+     */
+    public static final String PRECOMPRESSED_SUFFIX = ".gz";
+
+    /**
+     * Uploads are written here first and handed to the storage backend once complete.
+     */
+    private static final String STAGING_FOLDER = "staging";
+
+    private static final long CLEANUP_INTERVAL = 60 * 60 * 1000;
+
+    /**
+     * Prefix of the leases on the cleanup partitions; see JobLeases.
+     */
+    public static final String CLEANUP_LEASE = "storage-cleanup-";
+
+    /**
+     * Lease on pruning the profile timelines of hoaxes deleted behind HoaxService's back.
+     */
+    public static final String TIMELINE_PRUNE_LEASE = "timeline-prune";
+
     AppConfiguration appConfiguration;
-    Tika tika;
+    FileTypeDetector fileTypeDetector;
 
     FileAttachmentRepository fileAttachmentRepository;
 
-    public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository) {
+    FileJobQueue fileJobQueue;
+
+    StorageBackend storageBackend;
+
+    ContentStore contentStore;
+
+    JobLeases jobLeases;
+
+    HoaxTimeline hoaxTimeline;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final DistributionSummary reclaimedFiles;
+
+    private final Timer cleanupDuration;
+
+    public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository,
+                       FileJobQueue fileJobQueue, StorageBackend storageBackend, ContentStore contentStore,
+                       JobLeases jobLeases, HoaxTimeline hoaxTimeline, PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
         this.appConfiguration = appConfiguration;
         this.fileAttachmentRepository = fileAttachmentRepository;
-        this.tika = new Tika();
+        this.fileJobQueue = fileJobQueue;
+        this.storageBackend = storageBackend;
+        this.contentStore = contentStore;
+        this.jobLeases = jobLeases;
+        this.hoaxTimeline = hoaxTimeline;
+        this.fileTypeDetector = new FileTypeDetector();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reclaimedFiles = DistributionSummary.builder("hoaxify.storage.cleanup.reclaimed").baseUnit("files")
+                .register(meterRegistry);
+        this.cleanupDuration = Timer.builder("hoaxify.storage.cleanup").register(meterRegistry);
     }
 
     private static String getRandomName() {
         return UUID.randomUUID().toString().replaceAll("-", "");
     }
 
-    public String saveProfileImage(String base64Image) throws IOException {
-        String imageName = getRandomName();
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Writes the image's bytes under the SHA-256 of their content, unless they are already stored, and returns the
+     * image for {@link #referenceProfileImage}. Called before the transaction that references the image is opened.
+     */
+    public ProfileImage storeProfileImage(String base64Image) throws IOException {
         byte[] decodeBytes = Base64.getDecoder().decode(base64Image);
-        File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + imageName);
-        FileUtils.writeByteArrayToFile(target, decodeBytes);
-        return imageName;
+        ProfileImage image = new ProfileImage(hex(sha256().digest(decodeBytes)), decodeBytes,
+                servedType(decodeBytes, 0, decodeBytes.length));
+        String folder = appConfiguration.getProfileImagesFolder();
+        if (!isStored(folder, image.name)) {
+            writeProfileImage(folder, image);
+        }
+        return image;
+    }
+
+    /**
+     * Takes a reference to an image written by {@link #storeProfileImage} in the caller's transaction and returns its
+     * name. The bytes are written again only if they were deleted in the meantime. The transaction has to be run by
+     * {@link ContentStore#inTransaction}, which repeats it if a concurrent upload inserted the same content first.
+     */
+    public String referenceProfileImage(ProfileImage image) throws IOException {
+        String folder = appConfiguration.getProfileImagesFolder();
+        if (contentStore.acquire(folder, image.name, image.bytes.length)) {
+            if (!isStored(folder, image.name)) {
+                writeProfileImage(folder, image);
+            }
+            contentStore.describe(folder, image.name, image.servedType, false);
+        }
+        return image.name;
+    }
+
+    private void writeProfileImage(String folder, ProfileImage image) throws IOException {
+        Path staged = stagingPath(getRandomName());
+        try {
+            Files.write(staged, image.bytes, StandardOpenOption.CREATE_NEW);
+            storageBackend.store(folder, image.name, staged);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private boolean isStored(String folder, String name) throws IOException {
+        return storageBackend.find(folder, name) != null;
+    }
+
+    public static class ProfileImage {
+        final String name;
+
+        final byte[] bytes;
+
+        final String servedType;
+
+        ProfileImage(String name, byte[] bytes, String servedType) {
+            this.name = name;
+            this.bytes = bytes;
+            this.servedType = servedType;
+        }
+    }
+
+    private Path stagingPath(String name) throws IOException {
+        Path staging = Paths.get(appConfiguration.getUploadPath(), STAGING_FOLDER);
+        Files.createDirectories(staging);
+        return staging.resolve(name);
     }
 
     public String detectType(byte[] fileArr) {
-        return tika.detect(fileArr);
+        return fileTypeDetector.detect(fileArr);
+    }
+
+    public String detectBase64Type(String base64) {
+        return fileTypeDetector.detectBase64(base64);
     }
 
+    /**
+     * Releases the image's reference; once no user refers to the bytes, a {@link FileJob} removes them
+     * after the current transaction commits.
+     */
     public void deleteProfileImage(String image) {
+        if (image != null && contentStore.release(appConfiguration.getProfileImagesFolder(), image)) {
+            fileJobQueue.submit(FileJobType.DELETE_PROFILE_IMAGE, image);
+        }
+    }
+
+    /**
+     * Stages the upload and writes its bytes to storage unless they are already stored, then takes the content
+     * reference and saves the attachment in one transaction, so a failed save leaves no reference behind and no
+     * transaction waits on the storage backend; see {@link ContentStore}.
+     */
+    public FileAttachment saveAttachment(MultipartFile file) {
+        Date date = new Date();
+        String folder = appConfiguration.getAttachmentsFolder();
+        Path staged = null;
         try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullProfileImagesPath() + "/" + image));
+            staged = stagingPath(getRandomName());
+            StagedFile upload;
+            try (InputStream in = file.getInputStream()) {
+                upload = streamToFile(in, staged, appConfiguration.getAttachmentMaxSize().toBytes());
+            }
+            if (!isStored(folder, upload.hash)) {
+                writeAttachment(folder, upload, staged);
+            }
+            Path source = staged;
+            return contentStore.inTransaction(status -> referenceAttachment(folder, upload, source, date));
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(staged);
         }
     }
 
-    public FileAttachment saveAttachment(MultipartFile file) {
+    private FileAttachment referenceAttachment(String folder, StagedFile upload, Path staged, Date date) {
+        try {
+            if (contentStore.acquire(folder, upload.hash, upload.size)) {
+                boolean hasCopy = isStored(folder, upload.hash)
+                        ? isStored(folder, upload.hash + PRECOMPRESSED_SUFFIX)
+                        : writeAttachment(folder, upload, staged);
+                contentStore.describe(folder, upload.hash, upload.servedType, hasCopy);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         FileAttachment fileAttachment = new FileAttachment();
-        fileAttachment.setDate(new Date());
-        String randomName = getRandomName();
-        fileAttachment.setName(randomName);
+        fileAttachment.setDate(date);
+        fileAttachment.setFileType(upload.type);
+        fileAttachment.setName(upload.hash);
+        return fileAttachmentRepository.save(fileAttachment);
+    }
 
-        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + randomName);
+    /**
+     * Stores the staged bytes, with a gzip copy next to them if the type compresses well, and returns whether the copy
+     * was stored.
+     */
+    private boolean writeAttachment(String folder, StagedFile upload, Path staged) throws IOException {
+        Path compressed = isCompressible(upload.type) ? precompress(staged) : null;
         try {
-            byte[] fileAsByte = file.getBytes();
-            FileUtils.writeByteArrayToFile(target, fileAsByte);
-            fileAttachment.setFileType(detectType(fileAsByte));
+            storageBackend.store(folder, upload.hash, staged);
+            return compressed != null && storeQuietly(folder, upload.hash + PRECOMPRESSED_SUFFIX, compressed);
+        } finally {
+            deleteQuietly(compressed);
+        }
+    }
+
+    /**
+     * Copies the stream to the target through one fixed-size buffer, so an upload never sits in the heap as a whole,
+     * hashing the bytes as they pass, and returns the type detected from its leading bytes with the hash. The partial
+     * file is removed if the copy fails or the stream goes past {@code maxSize}.
+     */
+    private StagedFile streamToFile(InputStream in, Path target, long maxSize) throws IOException {
+        byte[] head = new byte[DETECTION_BYTES];
+        int headLength = IOUtils.read(in, head);
+        String fileType = fileTypeDetector.detect(head, 0, headLength);
+        String servedType = servedType(head, 0, headLength);
+        MessageDigest digest = sha256();
+        long written = headLength;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(head, 0, headLength);
+            while (true) {
+                if (written > maxSize) {
+                    throw new PayloadTooLargeException("Attachment must not be larger than " + maxSize + " bytes");
+                }
+                digest.update(head, 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                int read = source.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                written += read;
+                buffer.flip();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return new StagedFile(fileType, servedType, hex(digest.digest()), written);
+    }
+
+    /**
+     * The type ImageController serves the bytes with: only formats recognized from their signature get one, anything
+     * else is sent as a download, so an uploaded file is never rendered as a page of this site.
+     */
+    public static String servedType(byte[] head, int offset, int length) {
+        String type = FileTypeDetector.sniff(head, offset, length);
+        return type != null ? type : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static class StagedFile {
+        final String type;
+
+        final String servedType;
+
+        final String hash;
+
+        final long size;
+
+        StagedFile(String type, String servedType, String hash, long size) {
+            this.type = type;
+            this.servedType = servedType;
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    private static boolean isCompressible(String fileType) {
+        return fileType.startsWith("text/") || fileType.equals("application/json") || fileType.equals("application/xml")
+                || fileType.equals("image/svg+xml");
+    }
+
+    /**
+     * Writes a gzip copy next to the file and returns it, or null if it is not smaller. The copy is an optimization,
+     * so failing to write or store it does not fail the upload.
+     */
+    private static Path precompress(Path file) {
+        Path compressed = file.resolveSibling(file.getFileName() + PRECOMPRESSED_SUFFIX);
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed, StandardOpenOption.CREATE_NEW))) {
+                Files.copy(file, out);
+            }
+            if (Files.size(compressed) < Files.size(file)) {
+                return compressed;
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            // served uncompressed
         }
-        return fileAttachmentRepository.save(fileAttachment);
+        deleteQuietly(compressed);
+        return null;
     }
 
-    @Scheduled(fixedRate = 60 * 60 * 1000)
-    public void cleanupStorage() {
-        Date oneHourAgo = new Date(System.currentTimeMillis() - (60 * 60 * 1000));
-        List<FileAttachment> oldFiles = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
-        for (FileAttachment file : oldFiles) {
-            deleteAttachmentImage(file.getName());
-            fileAttachmentRepository.deleteById(file.getId());
+    private boolean storeQuietly(String folder, String name, Path source) {
+        try {
+            storageBackend.store(folder, name, source);
+            return true;
+        } catch (IOException e) {
+            // served uncompressed
+            return false;
         }
     }
 
-    public void deleteAttachmentImage(String image) {
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
         try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullAttachmentsPath() + "/" + image));
+            Files.deleteIfExists(path);
         } catch (IOException e) {
-            e.printStackTrace();
+            // left for cleanupStorage
+        }
+    }
+
+    /**
+     * Removes attachments that were never attached to a hoax. The orphans are split into partitions, and each
+     * partition is cleaned by whichever node takes its lease, so nodes share a backlog instead of racing over it. A
+     * finished partition stays locked for most of the interval, which keeps other nodes from cleaning it again
+     * before the next round.
+     * <p>
+     * Candidates are read in chunks along the (hoax_id, date, id) index; each chunk's rows and references are removed
+     * in a few bulk statements and one transaction, and then the unreferenced files are deleted on a bounded pool. A
+     * chunk is committed before the next one is read, so a run that is cut short leaves nothing half done and the
+     * next run carries on from there.
+     * <p>
+     * The same round prunes profile timeline entries left behind by hoaxes deleted outside HoaxService.
+     */
+    @Scheduled(fixedRate = CLEANUP_INTERVAL)
+    public void cleanupStorage() {
+        long started = System.nanoTime();
+        long startedAt = System.currentTimeMillis();
+        Date oneHourAgo = new Date(startedAt - (60 * 60 * 1000));
+        AppConfiguration.Cleanup cleanup = appConfiguration.getCleanup();
+        int partitions = Math.max(1, cleanup.getPartitions());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService deleters = Executors.newFixedThreadPool(Math.max(1, cleanup.getThreads()),
+                runnable -> daemon(runnable, "storage-cleanup-" + threadCount.incrementAndGet()));
+        long reclaimed = 0;
+        try {
+            for (int i = 0; i < partitions; i++) {
+                // nodes start at different partitions, so they do not all queue up for the first lease
+                int partition = (appConfiguration.resolveNodeId() + i) % partitions;
+                String lease = CLEANUP_LEASE + partition;
+                if (!jobLeases.acquire(lease, cleanup.getLeaseTtl())) {
+                    continue;
+                }
+                Date lockedUntil = new Date();
+                try {
+                    reclaimed += cleanupPartition(partitions, partition, lease, oneHourAgo, deleters);
+                    lockedUntil = new Date(startedAt + CLEANUP_INTERVAL * 9 / 10);
+                } finally {
+                    jobLeases.release(lease, lockedUntil);
+                }
+            }
+        } finally {
+            deleters.shutdownNow();
+        }
+        if (jobLeases.acquire(TIMELINE_PRUNE_LEASE, cleanup.getLeaseTtl())) {
+            Date lockedUntil = new Date();
+            try {
+                hoaxTimeline.pruneDeleted();
+                lockedUntil = new Date(startedAt + CLEANUP_INTERVAL * 9 / 10);
+            } finally {
+                jobLeases.release(TIMELINE_PRUNE_LEASE, lockedUntil);
+            }
+        }
+        deleteStagedBefore(oneHourAgo);
+        reclaimedFiles.record(reclaimed);
+        cleanupDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns how many files were deleted; stops early if the lease cannot be renewed.
+     */
+    private long cleanupPartition(int partitions, int partition, String lease, Date before, ExecutorService deleters) {
+        String folder = appConfiguration.getAttachmentsFolder();
+        int chunkSize = Math.max(1, appConfiguration.getCleanup().getChunkSize());
+        long idsPerMillisecond = 1L << (TimeOrderedIdGenerator.NODE_BITS + TimeOrderedIdGenerator.SEQUENCE_BITS);
+        long reclaimed = 0;
+        FileAttachment last = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            PageRequest chunk = PageRequest.of(0, chunkSize);
+            List<FileAttachment> orphans = last == null
+                    ? fileAttachmentRepository.findOrphans(before, idsPerMillisecond, partitions, partition, chunk)
+                    : fileAttachmentRepository.findOrphansAfter(before, idsPerMillisecond, partitions, partition,
+                    last.getDate(), last.getId(), chunk);
+            if (orphans.isEmpty()) {
+                break;
+            }
+            List<Long> ids = new ArrayList<>(orphans.size());
+            List<String> names = new ArrayList<>(orphans.size());
+            for (FileAttachment orphan : orphans) {
+                ids.add(orphan.getId());
+                names.add(orphan.getName());
+            }
+            Set<String> unreferenced = transactionTemplate.execute(status -> {
+                fileAttachmentRepository.deleteByIdIn(ids);
+                return contentStore.releaseAll(folder, names);
+            });
+            reclaimed += deleteFiles(deleters, folder, unreferenced);
+            if (orphans.size() < chunkSize || !jobLeases.renew(lease, appConfiguration.getCleanup().getLeaseTtl())) {
+                break;
+            }
+            last = orphans.get(orphans.size() - 1);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Deletes the files in parallel and returns how many were deleted. A file that cannot be deleted now is handed to
+     * a {@link FileJob}, which retries it.
+     */
+    private long deleteFiles(ExecutorService deleters, String folder, Set<String> names) {
+        Map<String, Future<Boolean>> deletions = new HashMap<>();
+        for (String name : names) {
+            deletions.put(name, deleters.submit(() -> contentStore.deleteIfUnreferenced(folder, name)));
+        }
+        long deleted = 0;
+        for (Map.Entry<String, Future<Boolean>> deletion : deletions.entrySet()) {
+            try {
+                if (deletion.getValue().get()) {
+                    deleted++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, deletion.getKey());
+            } catch (ExecutionException e) {
+                fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, deletion.getKey());
+            }
+        }
+        return deleted;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Staged files outlive their upload only if the process died in the middle of it.
+     */
+    private void deleteStagedBefore(Date date) {
+        Path staging = Paths.get(appConfiguration.getUploadPath(), STAGING_FOLDER);
+        if (!Files.isDirectory(staging)) {
+            return;
+        }
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(staging)) {
+            for (Path path : staged) {
+                if (Files.getLastModifiedTime(path).toMillis() < date.getTime()) {
+                    deleteQuietly(path);
+                }
+            }
+        } catch (IOException e) {
+            // tried again by the next cleanup
+        }
+    }
+
+    /**
+     * Releases the attachment's reference; once nothing refers to the bytes, a {@link FileJob} removes them after the
+     * current transaction commits.
+     */
+    public void deleteAttachmentImage(String image) {
+        if (contentStore.release(appConfiguration.getAttachmentsFolder(), image)) {
+            fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, image);
         }
     }
 
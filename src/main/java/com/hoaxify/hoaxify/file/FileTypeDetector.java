@@ -0,0 +1,110 @@
+package com.hoaxify.hoaxify.file;
+
+import org.apache.tika.Tika;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Recognizes the formats the application accepts from their first bytes and asks Tika only about anything else.
+ * Matching reads the given array in place, so the common case allocates nothing and costs the same for a 2 KB
+ * image and a 20 MB one.
+ */
+public class FileTypeDetector {
+
+    /**
+     * The longest signature checked, WebP's {@code RIFF....WEBP}, ends at this offset.
+     */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    public static final String PNG = "image/png";
+
+    public static final String JPEG = "image/jpeg";
+
+    public static final String GIF = "image/gif";
+
+    public static final String WEBP = "image/webp";
+
+    public static final String PDF = "application/pdf";
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    private static final byte[] GIF87_SIGNATURE = {'G', 'I', 'F', '8', '7', 'a'};
+
+    private static final byte[] GIF89_SIGNATURE = {'G', 'I', 'F', '8', '9', 'a'};
+
+    private static final byte[] RIFF_SIGNATURE = {'R', 'I', 'F', 'F'};
+
+    private static final byte[] WEBP_SIGNATURE = {'W', 'E', 'B', 'P'};
+
+    private static final byte[] PDF_SIGNATURE = {'%', 'P', 'D', 'F', '-'};
+
+    /**
+     * Four base64 characters encode three bytes, so this many characters cover every signature.
+     */
+    private static final int BASE64_PREFIX_LENGTH = (SIGNATURE_LENGTH + 2) / 3 * 4;
+
+    private final Tika tika = new Tika();
+
+    public String detect(byte[] bytes) {
+        return detect(bytes, 0, bytes.length);
+    }
+
+    public String detect(byte[] bytes, int offset, int length) {
+        String type = sniff(bytes, offset, length);
+        if (type != null) {
+            return type;
+        }
+        return tika.detect(offset == 0 && length == bytes.length ? bytes : Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    /**
+     * Detects the type of base64 encoded content, decoding only the prefix that holds the signature unless the
+     * format is not one of the known ones.
+     */
+    public String detectBase64(String base64) {
+        int prefixLength = Math.min(base64.length(), BASE64_PREFIX_LENGTH);
+        byte[] prefix = Base64.getDecoder().decode(base64.substring(0, prefixLength));
+        String type = sniff(prefix, 0, prefix.length);
+        if (type != null) {
+            return type;
+        }
+        return tika.detect(Base64.getDecoder().decode(base64));
+    }
+
+    /**
+     * Returns the type of a known signature at {@code offset}, or null.
+     */
+    public static String sniff(byte[] bytes, int offset, int length) {
+        if (startsWith(bytes, offset, length, 0, PNG_SIGNATURE)) {
+            return PNG;
+        }
+        if (startsWith(bytes, offset, length, 0, JPEG_SIGNATURE)) {
+            return JPEG;
+        }
+        if (startsWith(bytes, offset, length, 0, GIF89_SIGNATURE) || startsWith(bytes, offset, length, 0, GIF87_SIGNATURE)) {
+            return GIF;
+        }
+        if (startsWith(bytes, offset, length, 0, RIFF_SIGNATURE) && startsWith(bytes, offset, length, 8, WEBP_SIGNATURE)) {
+            return WEBP;
+        }
+        if (startsWith(bytes, offset, length, 0, PDF_SIGNATURE)) {
+            return PDF;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, int at, byte[] signature) {
+        if (length < at + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + at + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,222 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.error.NotFoundException;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves profile images and attachments. Uploaded files are stored under the SHA-256 hash of their bytes, so the name
+ * itself makes a strong ETag and the type recorded for the content at upload time is served without reading the file;
+ * files stored under the older random names have no content row and get an ETag built from their size and
+ * modification time and a type sniffed from their first bytes. Conditional requests are answered with 304 and single
+ * byte ranges are honoured. Large bodies are handed to Tomcat's sendfile support and never pass through
+ * the heap; elsewhere they are copied with {@link FileChannel#transferTo}, and files of a remote
+ * {@link StorageBackend} are streamed from it. A gzip copy written next to a file at
+ * upload time is served to clients that accept it.
+ */
+@RestController
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Below this, copying the body is cheaper than setting up sendfile; Tomcat's DefaultServlet uses the same size.
+     */
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS);
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    StorageBackend storageBackend;
+
+    @Autowired
+    ContentStore contentStore;
+
+    @GetMapping("/images/{folder}/{name}")
+    void serve(@PathVariable String folder, @PathVariable String name, ServletWebRequest webRequest) throws IOException {
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
+        checkPath(folder, name);
+        StoredFile file = storageBackend.find(folder, name);
+        if (file == null) {
+            throw new NotFoundException("File not found: " + name);
+        }
+        FileContent content = contentStore.find(folder, name)
+                .filter(described -> described.getContentType() != null)
+                .orElse(null);
+        String contentType = content != null ? content.getContentType() : contentTypeOf(file);
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        // images and PDFs are not compressible, so only other files may have a gzip copy
+        boolean gzip = false;
+        boolean mayHaveCopy = content != null
+                ? content.isCompressed()
+                : contentType.equals(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        if (mayHaveCopy) {
+            StoredFile compressed = storageBackend.find(folder, name + FileService.PRECOMPRESSED_SUFFIX);
+            if (compressed != null) {
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                if (rangeHeader == null && acceptsGzip(request)) {
+                    file = compressed;
+                    gzip = true;
+                }
+            }
+        }
+
+        long length = file.getSize();
+        long lastModified = file.getLastModified();
+        String version = content != null
+                ? name
+                : Long.toHexString(length) + "-" + Long.toHexString(lastModified);
+        String etag = "\"" + version + (gzip ? "-gz" : "") + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length;
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            HttpRange range = parseSingleRange(rangeHeader);
+            if (range != null) {
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length) + 1;
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= end) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLengthLong(end - start);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+        Path localPath = file.getLocalPath();
+        if (localPath == null) {
+            try (InputStream in = storageBackend.open(file, start, end)) {
+                IOUtils.copyLarge(in, response.getOutputStream());
+            }
+            return;
+        }
+        if (end - start >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, localPath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(localPath, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    private void checkPath(String folder, String name) {
+        if (!folder.equals(appConfiguration.getProfileImagesFolder()) && !folder.equals(appConfiguration.getAttachmentsFolder())) {
+            throw new NotFoundException("Folder not found: " + folder);
+        }
+        if (name.startsWith(".") || name.contains("/") || name.contains("\\")) {
+            throw new NotFoundException("File not found: " + name);
+        }
+    }
+
+    /**
+     * Sniffs the type of a file that has no recorded one, the same way {@link FileService#servedType} does at upload.
+     */
+    private String contentTypeOf(StoredFile file) throws IOException {
+        byte[] head = new byte[FileTypeDetector.SIGNATURE_LENGTH];
+        int length;
+        try (InputStream in = storageBackend.open(file, 0, Math.min(file.getSize(), head.length))) {
+            length = IOUtils.read(in, head);
+        }
+        return FileService.servedType(head, 0, length);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    /**
+     * A Range header is only honoured if the file is still the one If-Range refers to.
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the requested range, or null when the header is malformed or asks for several ranges; the whole file
+     * is sent then, as the Range header may be ignored.
+     */
+    private static HttpRange parseSingleRange(String rangeHeader) {
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+}
@@ -0,0 +1,277 @@
+package com.hoaxify.hoaxify.file;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps files on local filesystems in the {@link ShardedLayout}, {@code <stripe>/<folder>/ab/cd/<name>}, where the
+ * stripe is one of several root directories, e.g. one per mount point.
+ * <p>
+ * Files of the old flat layout, {@code <uploadPath>/<folder>/<name>}, are still found and deleted until
+ * {@link #migrateLegacy} has moved them. Likewise, when stripes are added or removed, files left in the stripe an
+ * earlier configuration picked are found by scanning the other roots after a miss, until {@link #restripe} has moved
+ * them. Every move is a rename, or a copy published by a rename, and only ever goes towards the file's current stripe,
+ * so {@link #find} looks there again after missing it elsewhere to cover a move between the lookups.
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path legacyRoot;
+
+    private final List<Path> stripes;
+
+    /**
+     * Every root a file may have been striped into: the stripes and the upload path, which is the only stripe when none
+     * are configured.
+     */
+    private final List<Path> roots;
+
+    public LocalStorageBackend(String uploadPath, List<String> stripes) {
+        this.legacyRoot = Paths.get(uploadPath);
+        this.stripes = stripes.isEmpty()
+                ? Collections.singletonList(legacyRoot)
+                : stripes.stream().map(Paths::get).collect(Collectors.toList());
+        List<Path> roots = new ArrayList<>(this.stripes);
+        if (!roots.contains(legacyRoot)) {
+            roots.add(legacyRoot);
+        }
+        this.roots = Collections.unmodifiableList(roots);
+    }
+
+    public Path shardedPath(String folder, String name) {
+        ShardedLayout.checkName(name);
+        Path stripe = stripes.get(ShardedLayout.stripeOf(name, stripes.size()));
+        return stripe.resolve(folder).resolve(ShardedLayout.shardOf(name)).resolve(name);
+    }
+
+    private Path legacyPath(String folder, String name) {
+        return legacyRoot.resolve(folder).resolve(name);
+    }
+
+    /**
+     * Returns where the name would be in each root other than its current stripe.
+     */
+    private List<Path> formerPaths(String folder, String name, Path sharded) {
+        String shard = ShardedLayout.shardOf(name);
+        List<Path> paths = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            Path path = root.resolve(folder).resolve(shard).resolve(name);
+            if (!path.equals(sharded)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    @Override
+    public void store(String folder, String name, Path source) throws IOException {
+        Path target = shardedPath(folder, name);
+        Files.createDirectories(target.getParent());
+        publish(source, target);
+    }
+
+    /**
+     * Moves the file into place with a rename, or, across filesystems, copies it next to the target first and renames
+     * the copy, so the target never exists half-written.
+     */
+    private static void publish(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+            Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public StoredFile find(String folder, String name) throws IOException {
+        Path sharded = shardedPath(folder, name);
+        StoredFile file = stat(folder, name, sharded);
+        if (file == null) {
+            file = stat(folder, name, legacyPath(folder, name));
+        }
+        if (file == null) {
+            for (Path former : formerPaths(folder, name, sharded)) {
+                file = stat(folder, name, former);
+                if (file != null) {
+                    break;
+                }
+            }
+        }
+        if (file == null) {
+            file = stat(folder, name, sharded);
+        }
+        return file;
+    }
+
+    private static StoredFile stat(String folder, String name, Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        return new StoredFile(folder, name, attributes.size(), attributes.lastModifiedTime().toMillis(), path);
+    }
+
+    @Override
+    public InputStream open(StoredFile file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file.getLocalPath(), StandardOpenOption.READ);
+        channel.position(start);
+        return new BoundedInputStream(Channels.newInputStream(channel), end - start);
+    }
+
+    /**
+     * Deletes the flat copy and those in former stripes before the one in the current stripe: a concurrent migration
+     * can only move the file forward, so it is caught by the last delete.
+     */
+    @Override
+    public void delete(String folder, String name) throws IOException {
+        Path sharded = shardedPath(folder, name);
+        Files.deleteIfExists(legacyPath(folder, name));
+        for (Path former : formerPaths(folder, name, sharded)) {
+            Files.deleteIfExists(former);
+        }
+        Files.deleteIfExists(sharded);
+    }
+
+    /**
+     * Moves the files of the folder's flat layout into their shards and returns how many were moved. Safe to run while
+     * the application serves and deletes files. A file that cannot be moved stays where it is, still served, and the
+     * others are moved before the first failure is thrown, naming the file, with the later ones suppressed.
+     */
+    public int migrateLegacy(String folder) throws IOException {
+        Path legacyFolder = legacyRoot.resolve(folder);
+        if (!Files.isDirectory(legacyFolder)) {
+            return 0;
+        }
+        int moved = 0;
+        List<IOException> failures = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(legacyFolder, Files::isRegularFile)) {
+            for (Path source : files) {
+                String name = source.getFileName().toString();
+                if (name.startsWith(".") || name.endsWith(PART_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    if (migrate(source, shardedPath(folder, name))) {
+                        moved++;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    failures.add(new IOException("Could not move " + source, e));
+                }
+            }
+        }
+        throwIfFailed(failures);
+        return moved;
+    }
+
+    private static void throwIfFailed(List<IOException> failures) throws IOException {
+        if (!failures.isEmpty()) {
+            IOException failure = failures.get(0);
+            failures.subList(1, failures.size()).forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    /**
+     * Moves the folder's files that sit in a root other than the stripe the current configuration picks for them, left
+     * there when stripes were added or removed, and returns how many were moved. Safe to run while the application
+     * serves and deletes files; failures are handled as in {@link #migrateLegacy}.
+     */
+    public int restripe(String folder) throws IOException {
+        int moved = 0;
+        List<IOException> failures = new ArrayList<>();
+        for (Path root : roots) {
+            Path rootFolder = root.resolve(folder);
+            if (!Files.isDirectory(rootFolder)) {
+                continue;
+            }
+            try (DirectoryStream<Path> outer = Files.newDirectoryStream(rootFolder, LocalStorageBackend::isShardDirectory)) {
+                for (Path first : outer) {
+                    try (DirectoryStream<Path> inner = Files.newDirectoryStream(first, LocalStorageBackend::isShardDirectory)) {
+                        for (Path second : inner) {
+                            moved += restripeShard(folder, second, failures);
+                        }
+                    }
+                }
+            }
+        }
+        throwIfFailed(failures);
+        return moved;
+    }
+
+    private int restripeShard(String folder, Path shard, List<IOException> failures) throws IOException {
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(shard, Files::isRegularFile)) {
+            for (Path source : files) {
+                String name = source.getFileName().toString();
+                if (name.startsWith(".") || name.endsWith(PART_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    Path target = shardedPath(folder, name);
+                    if (!target.equals(source) && migrate(source, target)) {
+                        moved++;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    failures.add(new IOException("Could not move " + source, e));
+                }
+            }
+        }
+        return moved;
+    }
+
+    private static boolean isShardDirectory(Path path) {
+        String name = path.getFileName().toString();
+        return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0
+                && Files.isDirectory(path);
+    }
+
+    private static boolean migrate(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (AtomicMoveNotSupportedException e) {
+            Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+            try {
+                Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException deleted) {
+                return false;
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            if (!Files.deleteIfExists(source)) {
+                // deleted while it was being copied; the delete missed the new copy
+                Files.deleteIfExists(target);
+                return false;
+            }
+            return true;
+        }
+    }
+}
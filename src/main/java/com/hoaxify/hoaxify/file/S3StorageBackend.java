@@ -0,0 +1,130 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps files in an S3 compatible bucket, addressed path-style as {@code <endpoint>/<bucket>/<folder>/ab/cd/<name>};
+ * the {@link ShardedLayout} prefix spreads the keys over the store's partitions. Requests are signed with
+ * {@link AwsSigV4Signer} and sent with {@link HttpURLConnection}, whose keep-alive cache reuses connections.
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    private final String endpoint;
+
+    private final String bucket;
+
+    private final int timeoutMillis;
+
+    private final AwsSigV4Signer signer;
+
+    public S3StorageBackend(AppConfiguration.S3 s3) {
+        this.endpoint = s3.getEndpoint().endsWith("/")
+                ? s3.getEndpoint().substring(0, s3.getEndpoint().length() - 1)
+                : s3.getEndpoint();
+        this.bucket = s3.getBucket();
+        this.timeoutMillis = (int) s3.getTimeout().toMillis();
+        this.signer = new AwsSigV4Signer(s3.getAccessKey(), s3.getSecretKey(), s3.getRegion());
+    }
+
+    private URL urlOf(String folder, String name) throws IOException {
+        ShardedLayout.checkName(name);
+        return new URL(endpoint + "/" + bucket + "/" + folder + "/" + ShardedLayout.shardOf(name) + "/" + name);
+    }
+
+    private HttpURLConnection connect(String method, URL url, Map<String, String> headers, String payloadHash) throws IOException {
+        signer.sign(method, url, headers, payloadHash, Instant.now());
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        headers.forEach(connection::setRequestProperty);
+        return connection;
+    }
+
+    private static IOException failure(String method, URL url, HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream error = connection.getErrorStream();
+        if (error != null) {
+            error.close();
+        }
+        return new IOException(method + " " + url + " returned " + status);
+    }
+
+    @Override
+    public void store(String folder, String name, Path source) throws IOException {
+        URL url = urlOf(folder, name);
+        long size = Files.size(source);
+        HttpURLConnection connection = connect("PUT", url, new LinkedHashMap<>(), AwsSigV4Signer.UNSIGNED_PAYLOAD);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(size);
+        try (OutputStream out = connection.getOutputStream()) {
+            Files.copy(source, out);
+        }
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw failure("PUT", url, connection);
+        }
+        connection.getInputStream().close();
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public StoredFile find(String folder, String name) throws IOException {
+        URL url = urlOf(folder, name);
+        HttpURLConnection connection = connect("HEAD", url, new LinkedHashMap<>(), AwsSigV4Signer.EMPTY_PAYLOAD);
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw failure("HEAD", url, connection);
+        }
+        return new StoredFile(folder, name, connection.getContentLengthLong(), connection.getLastModified(), null);
+    }
+
+    @Override
+    public InputStream open(StoredFile file, long start, long end) throws IOException {
+        if (start >= end) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        URL url = urlOf(file.getFolder(), file.getName());
+        Map<String, String> headers = new LinkedHashMap<>();
+        boolean whole = start == 0 && end == file.getSize();
+        if (!whole) {
+            headers.put("Range", "bytes=" + start + "-" + (end - 1));
+        }
+        HttpURLConnection connection = connect("GET", url, headers, AwsSigV4Signer.EMPTY_PAYLOAD);
+        int status = connection.getResponseCode();
+        if (status != (whole ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_PARTIAL)) {
+            throw failure("GET", url, connection);
+        }
+        return connection.getInputStream();
+    }
+
+    @Override
+    public void delete(String folder, String name) throws IOException {
+        URL url = urlOf(folder, name);
+        HttpURLConnection connection = connect("DELETE", url, new LinkedHashMap<>(), AwsSigV4Signer.EMPTY_PAYLOAD);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_NO_CONTENT && status != HttpURLConnection.HTTP_OK
+                && status != HttpURLConnection.HTTP_NOT_FOUND) {
+            throw failure("DELETE", url, connection);
+        }
+        InputStream body = status == HttpURLConnection.HTTP_NOT_FOUND ? connection.getErrorStream() : connection.getInputStream();
+        if (body != null) {
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hoaxify.hoaxify.file;
+
+/**
+ * Spreads files over two levels of 256 directories each, {@code ab/cd/<name>}, chosen by a hash of the name, so no
+ * directory grows past a few thousand entries even with hundreds of millions of files.
+ */
+public final class ShardedLayout {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ShardedLayout() {
+    }
+
+    /**
+     * String's hash code is fixed by its specification, so the layout does not change between JVMs or restarts. The
+     * mixing step spreads names that differ only in their last characters.
+     */
+    static int hash(String name) {
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Returns the relative shard directory of the name, e.g. {@code 3f/a0}.
+     */
+    public static String shardOf(String name) {
+        int hash = hash(name);
+        return new String(new char[]{
+                HEX[(hash >>> 28) & 0xF], HEX[(hash >>> 24) & 0xF], '/', HEX[(hash >>> 20) & 0xF], HEX[(hash >>> 16) & 0xF]
+        });
+    }
+
+    /**
+     * Picks one of {@code stripes} root directories from the bits of the hash the shard does not use.
+     */
+    public static int stripeOf(String name, int stripes) {
+        return (hash(name) & 0xFFFF) % stripes;
+    }
+
+    static void checkName(String name) {
+        if (name.isEmpty() || name.startsWith(".") || name.contains("/") || name.contains("\\")) {
+            throw new IllegalArgumentException("Invalid file name: " + name);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.hoaxify.hoaxify.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Where uploaded files live. Files are addressed by folder, e.g. the profile image or attachment folder, and a name
+ * that is unique within it; a stored file is never modified, only replaced by a new name and deleted.
+ */
+public interface StorageBackend {
+
+    /**
+     * Stores the content of {@code source} under the name. The file becomes visible to {@link #find} only once it is
+     * complete. {@code source} may be moved away by the call.
+     */
+    void store(String folder, String name, Path source) throws IOException;
+
+    /**
+     * Returns the stored file, or null if there is none.
+     */
+    StoredFile find(String folder, String name) throws IOException;
+
+    /**
+     * Opens the bytes from {@code start} up to, not including, {@code end}.
+     */
+    InputStream open(StoredFile file, long start, long end) throws IOException;
+
+    /**
+     * Deletes the file if it exists.
+     */
+    void delete(String folder, String name) throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.hoaxify.hoaxify.file;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Moves uploads of the old flat layout into their shards, and uploads left in another stripe after the stripes were
+ * changed into their current one, while the application keeps running; see {@link LocalStorageBackend#migrateLegacy}
+ * and {@link LocalStorageBackend#restripe}. Runs once in the background after startup and does nothing for other
+ * backends.
+ * <p>
+ * Files that cannot be moved are logged with their path and stay where they are, still served; the next start moves
+ * them. Each run is counted as {@code hoaxify.storage.migration} with a {@code result} of completed or failed.
+ */
+@Component
+public class StorageMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageMigration.class);
+
+    private final Counter migrated;
+
+    private final Counter completed;
+
+    private final Counter failed;
+
+    StorageBackend storageBackend;
+
+    AppConfiguration appConfiguration;
+
+    public StorageMigration(StorageBackend storageBackend, AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.storageBackend = storageBackend;
+        this.appConfiguration = appConfiguration;
+        this.migrated = Counter.builder("hoaxify.storage.migrated").register(meterRegistry);
+        this.completed = Counter.builder("hoaxify.storage.migration").tag("result", "completed").register(meterRegistry);
+        this.failed = Counter.builder("hoaxify.storage.migration").tag("result", "failed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!appConfiguration.getStorage().isMigrate() || !(storageBackend instanceof LocalStorageBackend)) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "storage-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            log.info("Storage migration moved {} files", migrate());
+            completed.increment();
+        } catch (IOException e) {
+            failed.increment();
+            log.warn("Storage migration left files behind; they are still served and the next start moves them", e);
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Storage migration stopped; files not yet moved are still served and the next start moves them", e);
+        }
+    }
+
+    /**
+     * Returns how many files were moved. Every folder is migrated even if another fails; the first failure is thrown
+     * afterwards with the later ones suppressed.
+     */
+    public int migrate() throws IOException {
+        if (!(storageBackend instanceof LocalStorageBackend)) {
+            return 0;
+        }
+        LocalStorageBackend local = (LocalStorageBackend) storageBackend;
+        List<IOException> failures = new ArrayList<>();
+        int moved = 0;
+        for (String folder : Arrays.asList(appConfiguration.getProfileImagesFolder(), appConfiguration.getAttachmentsFolder())) {
+            try {
+                moved += local.migrateLegacy(folder);
+            } catch (IOException e) {
+                failures.add(e);
+            }
+            try {
+                moved += local.restripe(folder);
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        }
+        migrated.increment(moved);
+        if (!failures.isEmpty()) {
+            IOException failure = failures.get(0);
+            failures.subList(1, failures.size()).forEach(failure::addSuppressed);
+            throw failure;
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hoaxify.hoaxify.file;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * What a {@link StorageBackend} knows about a stored file. {@code localPath} is set only by backends that keep files
+ * on a local filesystem, which lets callers hand the file to the connector directly.
+ */
+@Value
+public class StoredFile {
+    String folder;
+
+    String name;
+
+    long size;
+
+    long lastModified;
+
+    Path localPath;
+}
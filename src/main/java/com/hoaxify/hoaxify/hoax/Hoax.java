@@ -2,8 +2,10 @@ package com.hoaxify.hoaxify.hoax;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.hoaxify.hoaxify.file.FileAttachment;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
 import com.hoaxify.hoaxify.user.User;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -12,10 +14,12 @@ import java.util.Date;
 
 @Data
 @Entity
+@EntityListeners(HoaxEntityListener.class)
 public class Hoax {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
     private long id;
 
     @NotNull
@@ -1,42 +1,109 @@
 package com.hoaxify.hoaxify.hoax;
 
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.hoax.vm.BatchItemResultVM;
 import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import com.hoaxify.hoaxify.shared.CursorPage;
 import com.hoaxify.hoaxify.shared.CurrentUser;
 import com.hoaxify.hoaxify.shared.GenericResponse;
-import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.parameters.P;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/1.0")
 public class HoaxController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     HoaxService hoaxService;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    HoaxStreamBroker hoaxStreamBroker;
+
+    @Autowired
+    HotFeed hotFeed;
+
+    @Autowired
+    HoaxWriteQueue hoaxWriteQueue;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    UserService userService;
+
     @PostMapping("/hoaxes")
-    HoaxVM createHoax(@Valid @RequestBody Hoax hoax, @CurrentUser User user) {
-        return new HoaxVM(hoaxService.save(user, hoax));
+    HoaxVM createHoax(@Valid @RequestBody Hoax hoax, @CurrentUser AuthenticatedUser user) {
+        if (appConfiguration.getWrite().isGroupCommit()) {
+            return new HoaxVM(hoaxWriteQueue.submit(user.getId(), hoax));
+        }
+        return new HoaxVM(hoaxService.save(user.getId(), hoax));
+    }
+
+    @PostMapping("/hoaxes/batch")
+    List<BatchItemResultVM> createHoaxes(@RequestBody List<Hoax> hoaxes, @CurrentUser AuthenticatedUser user) {
+        return hoaxService.saveAll(user.getId(), hoaxes);
     }
 
     @GetMapping("/hoaxes")
     Page<HoaxVM> getAllHoaxes(Pageable pageable) {
-        return hoaxService.getAllHoaxes(pageable).map(HoaxVM::new);
+        Page<HoaxVM> hot = hotFeed.getAllHoaxes(pageable);
+        if (hot != null) {
+            return hot;
+        }
+        return hoaxService.getAllHoaxes(pageable);
+    }
+
+    @GetMapping(value = "/hoaxes", params = "cursor")
+    CursorPage<HoaxVM> getAllHoaxesByCursor(@RequestParam(name = "cursor") String cursor, Pageable pageable) {
+        long beforeId = CursorPage.decode(cursor, Long.MAX_VALUE);
+        CursorPage<HoaxVM> hot = hotFeed.getHoaxesBefore(beforeId, pageable.getPageSize());
+        if (hot != null) {
+            return hot;
+        }
+        return hoaxService.getHoaxesBefore(beforeId, null, pageable.getPageSize());
+    }
+
+    @GetMapping("/hoaxes/home")
+    CursorPage<HoaxVM> getHomeTimeline(@CurrentUser AuthenticatedUser user,
+                                       @RequestParam(name = "cursor", required = false) String cursor,
+                                       Pageable pageable) {
+        long beforeId = CursorPage.decode(cursor, Long.MAX_VALUE);
+        return hoaxService.getHomeTimeline(user.getId(), beforeId, pageable.getPageSize());
     }
 
     @GetMapping("users/{username}/hoaxes")
     Page<HoaxVM> getHoaxesOfUser(@PathVariable String username, Pageable pageable) {
-        return hoaxService.getHoaxesOfUser(username, pageable).map(HoaxVM::new);
+        return hoaxService.getHoaxesOfUser(username, pageable);
+    }
+
+    @GetMapping(value = "users/{username}/hoaxes", params = "cursor")
+    CursorPage<HoaxVM> getHoaxesOfUserByCursor(@PathVariable String username,
+                                               @RequestParam(name = "cursor") String cursor,
+                                               Pageable pageable) {
+        long beforeId = CursorPage.decode(cursor, Long.MAX_VALUE);
+        return hoaxService.getHoaxesBefore(beforeId, username, pageable.getPageSize());
     }
 
     @GetMapping({"/hoaxes/{id:[0-9]+}", "users/{username}/hoaxes/{id:[0-9]+}"})
@@ -44,22 +111,72 @@ public class HoaxController {
                                         @PathVariable(required = false) String username,
                                         Pageable pageable,
                                         @RequestParam(name = "direction", defaultValue = "after") String direction,
-                                        @RequestParam(name = "count", defaultValue = "false", required = false) boolean count) {
+                                        @RequestParam(name = "count", defaultValue = "false", required = false) boolean count,
+                                        @RequestParam(name = "cursor", required = false) String cursor) {
         if (!direction.equalsIgnoreCase("after")) {
-            return ResponseEntity.ok(hoaxService.getOldHoaxes(id, username, pageable).map(HoaxVM::new));
+            if (cursor != null) {
+                long beforeId = Math.min(id, CursorPage.decode(cursor, id));
+                return ResponseEntity.ok(hoaxService.getHoaxesBefore(beforeId, username, pageable.getPageSize()));
+            }
+            return ResponseEntity.ok(hoaxService.getOldHoaxes(id, username, pageable));
         }
         if (count) {
             long newHoaxCount = hoaxService.getNewHoaxesCount(id, username);
             return ResponseEntity.ok(Collections.singletonMap("count", newHoaxCount));
         }
-        List<HoaxVM> newHoaxes = hoaxService.getNewHoaxes(id, username, pageable).stream().map(HoaxVM::new).collect(Collectors.toList());
+        if (cursor != null) {
+            long afterId = Math.max(id, CursorPage.decode(cursor, id));
+            CursorPage<HoaxVM> hot = username == null ? hotFeed.getHoaxesAfter(afterId, pageable.getPageSize()) : null;
+            if (hot != null) {
+                return ResponseEntity.ok(hot);
+            }
+            return ResponseEntity.ok(hoaxService.getHoaxesAfter(afterId, username, pageable.getPageSize()));
+        }
+        List<HoaxVM> hot = username == null ? hotFeed.getNewHoaxes(id, pageable) : null;
+        if (hot != null) {
+            return ResponseEntity.ok(hot);
+        }
+        List<HoaxVM> newHoaxes = hoaxService.getNewHoaxes(id, username, pageable);
         return ResponseEntity.ok(newHoaxes);
     }
 
+    @GetMapping(value = {"/hoaxes/{id:[0-9]+}", "users/{username}/hoaxes/{id:[0-9]+}"},
+            params = {"direction=after", "format=ndjson"})
+    ResponseEntity<StreamingResponseBody> streamNewHoaxes(@PathVariable long id,
+                                                          @PathVariable(required = false) String username) {
+        if (username != null) {
+            // once the body streams the status is sent, so an unknown user has to be found out before
+            userService.getByUsername(username);
+        }
+        StreamingResponseBody body = outputStream -> hoaxService.streamNewHoaxes(id, username, batch -> {
+            try {
+                for (HoaxVM hoax : batch) {
+                    outputStream.write(objectMapper.writeValueAsBytes(hoax));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    @GetMapping(value = "/hoaxes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamHoaxes(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return hoaxStreamBroker.subscribe(null, lastEventId);
+    }
+
+    @GetMapping(value = "users/{username}/hoaxes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamHoaxesOfUser(@PathVariable String username,
+                                  @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return hoaxStreamBroker.subscribe(username, lastEventId);
+    }
+
     @DeleteMapping("/hoaxes/{id:[0-9]+}")
     @PreAuthorize("@hoaxSecurityService.isAllowedToDelete(#id, principal)")
-    GenericResponse deleteHoax(@PathVariable long id){
-        hoaxService.deleteHoax(id);
+    GenericResponse deleteHoax(@PathVariable long id, @CurrentUser AuthenticatedUser user){
+        hoaxService.deleteHoax(id, user.getId());
         return new GenericResponse("Hoax is removed!");
     }
 }
@@ -0,0 +1,24 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+@Value
+@AllArgsConstructor
+public class HoaxCreatedEvent {
+    long id;
+
+    long userId;
+
+    /**
+     * The hoax as it was saved, so listeners that keep views need not load it again; not part of the stream payload.
+     */
+    @JsonIgnore
+    HoaxVM view;
+
+    public HoaxCreatedEvent(long id, long userId) {
+        this(id, userId, null);
+    }
+}
@@ -0,0 +1,10 @@
+package com.hoaxify.hoaxify.hoax;
+
+import lombok.Value;
+
+@Value
+public class HoaxDeletedEvent {
+    long id;
+
+    long userId;
+}
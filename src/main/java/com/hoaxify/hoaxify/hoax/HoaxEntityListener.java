@@ -0,0 +1,29 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+public class HoaxEntityListener {
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void hoaxCreated(Hoax hoax) {
+        HoaxVM view = hoax.getUser() == null ? null : new HoaxVM(hoax);
+        eventPublisher.publishEvent(new HoaxCreatedEvent(hoax.getId(), userIdOf(hoax), view));
+    }
+
+    @PostRemove
+    public void hoaxDeleted(Hoax hoax) {
+        eventPublisher.publishEvent(new HoaxDeletedEvent(hoax.getId(), userIdOf(hoax)));
+    }
+
+    private long userIdOf(Hoax hoax) {
+        return hoax.getUser() == null ? 0 : hoax.getUser().getId();
+    }
+}
@@ -0,0 +1,304 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.user.UserChangedEvent;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the ids of the most recent hoaxes, globally and per user, in sorted arrays so that "how many hoaxes are
+ * newer than id X" is a binary search instead of a count query. Each window knows the id below which it is no
+ * longer complete; older ids get -1 and the caller falls back to the database. A clustered instance always answers
+ * -1, as its windows would miss the hoaxes saved and deleted on other nodes.
+ */
+@Component
+public class HoaxIdIndex {
+
+    private static final long GLOBAL = -1;
+
+    private final Map<Long, IdWindow> windows;
+
+    private final Map<String, Long> userIds;
+
+    private final Counter hits;
+
+    private final Counter fallbacks;
+
+    HoaxRepository hoaxRepository;
+
+    UserService userService;
+
+    AppConfiguration appConfiguration;
+
+    public HoaxIdIndex(HoaxRepository hoaxRepository, UserService userService,
+                       AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.hoaxRepository = hoaxRepository;
+        this.userService = userService;
+        this.appConfiguration = appConfiguration;
+        int maxUsers = appConfiguration.getFeed().getIndexedUsers();
+        this.windows = new LinkedHashMap<Long, IdWindow>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, IdWindow> eldest) {
+                return size() > maxUsers + 1;
+            }
+        };
+        this.userIds = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxUsers;
+            }
+        };
+        this.hits = Counter.builder("hoaxify.feed.count.index").tag("result", "hit").register(meterRegistry);
+        this.fallbacks = Counter.builder("hoaxify.feed.count.index").tag("result", "fallback").register(meterRegistry);
+    }
+
+    /**
+     * Returns the number of hoaxes newer than {@code id}, or -1 if the index cannot answer and the database has
+     * to be asked.
+     */
+    public long countNewerThan(long id, String username) {
+        if (appConfiguration.isClustered()) {
+            fallbacks.increment();
+            return -1;
+        }
+        IdWindow window;
+        if (username == null) {
+            window = loadedWindow(GLOBAL, appConfiguration.getFeed().getIndexCapacity(),
+                    () -> hoaxRepository.findLatestIds(PageRequest.of(0, appConfiguration.getFeed().getIndexCapacity())));
+        } else {
+            long userId = userIdOf(username);
+            int capacity = appConfiguration.getFeed().getUserIndexCapacity();
+            window = loadedWindow(userId, capacity,
+                    () -> hoaxRepository.findLatestIdsOfUser(userId, PageRequest.of(0, capacity)));
+        }
+        long count = window == null ? -1 : window.countNewerThan(id);
+        if (count < 0) {
+            fallbacks.increment();
+        } else {
+            hits.increment();
+        }
+        return count;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxCreated(HoaxCreatedEvent event) {
+        for (IdWindow window : windowsOf(event.getUserId())) {
+            window.add(event.getId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxDeleted(HoaxDeletedEvent event) {
+        for (IdWindow window : windowsOf(event.getUserId())) {
+            window.remove(event.getId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (windows) {
+            windows.remove(event.getId());
+            userIds.remove(event.getUsername());
+        }
+    }
+
+    private long userIdOf(String username) {
+        Long userId;
+        synchronized (windows) {
+            userId = userIds.get(username);
+        }
+        if (userId == null) {
+            userId = userService.getByUsername(username).getId();
+            synchronized (windows) {
+                userIds.put(username, userId);
+            }
+        }
+        return userId;
+    }
+
+    private List<IdWindow> windowsOf(long userId) {
+        List<IdWindow> affected = new ArrayList<>(2);
+        synchronized (windows) {
+            IdWindow global = windows.get(GLOBAL);
+            if (global != null) {
+                affected.add(global);
+            }
+            IdWindow user = windows.get(userId);
+            if (user != null) {
+                affected.add(user);
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * The window is registered before it is loaded, so hoaxes committed while the query runs are captured by the
+     * event listeners and merged in rather than lost.
+     */
+    private IdWindow loadedWindow(long key, int capacity, Supplier<List<Long>> latestIds) {
+        IdWindow window;
+        synchronized (windows) {
+            window = windows.computeIfAbsent(key, k -> new IdWindow(capacity));
+        }
+        if (window.isLoaded()) {
+            return window;
+        }
+        if (!window.startLoading()) {
+            return null;
+        }
+        try {
+            window.load(latestIds.get());
+        } catch (RuntimeException e) {
+            synchronized (windows) {
+                windows.remove(key, window);
+            }
+            throw e;
+        }
+        return window;
+    }
+
+    static class IdWindow {
+        private final int capacity;
+
+        private long[] ids = new long[16];
+
+        private int size;
+
+        /**
+         * Every hoax with an id greater than this is in the window.
+         */
+        private long coveredFrom = Long.MAX_VALUE;
+
+        private boolean loading;
+
+        private boolean loaded;
+
+        private final Set<Long> removedWhileLoading = new HashSet<>();
+
+        IdWindow(int capacity) {
+            this.capacity = Math.max(2, capacity);
+        }
+
+        synchronized boolean isLoaded() {
+            return loaded;
+        }
+
+        synchronized boolean startLoading() {
+            if (loaded || loading) {
+                return false;
+            }
+            loading = true;
+            return true;
+        }
+
+        synchronized void load(List<Long> latestIdsDescending) {
+            for (Long id : latestIdsDescending) {
+                if (!removedWhileLoading.contains(id)) {
+                    insert(id);
+                }
+            }
+            if (latestIdsDescending.size() < capacity) {
+                coveredFrom = 0;
+            } else {
+                coveredFrom = latestIdsDescending.get(latestIdsDescending.size() - 1) - 1;
+            }
+            removedWhileLoading.clear();
+            loading = false;
+            loaded = true;
+            trim();
+        }
+
+        synchronized void add(long id) {
+            insert(id);
+            if (loaded) {
+                trim();
+            }
+        }
+
+        synchronized void remove(long id) {
+            if (!loaded) {
+                removedWhileLoading.add(id);
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        synchronized long countNewerThan(long id) {
+            if (!loaded || id < coveredFrom) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            int firstNewer = index >= 0 ? index + 1 : -index - 1;
+            return size - firstNewer;
+        }
+
+        /**
+         * Returns up to {@code limit} ids older than {@code beforeId}, newest first, or null if the window cannot
+         * tell whether older ids exist below its covered range.
+         */
+        synchronized long[] idsBefore(long beforeId, int limit) {
+            if (!loaded) {
+                return null;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, beforeId);
+            int end = index >= 0 ? index : -index - 1;
+            int count = Math.min(limit, end);
+            if (count < limit && coveredFrom != 0) {
+                return null;
+            }
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = ids[end - 1 - i];
+            }
+            return result;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void insert(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            int position = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        /**
+         * Drops the older half at once when the window is full, so eviction is amortised over many inserts.
+         */
+        private void trim() {
+            if (size <= capacity) {
+                return;
+            }
+            int drop = size - capacity / 2;
+            coveredFrom = Math.max(coveredFrom, ids[drop - 1]);
+            System.arraycopy(ids, drop, ids, 0, size - drop);
+            size -= drop;
+        }
+    }
+}
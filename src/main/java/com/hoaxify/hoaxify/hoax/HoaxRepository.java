@@ -1,11 +1,59 @@
 package com.hoaxify.hoaxify.hoax;
 
-import com.hoaxify.hoaxify.user.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Every read that is rendered as {@code HoaxVM} loads the user and the attachment in the same statement; the
+ * attachment side of the one-to-one cannot be proxied and would otherwise cost one query per row.
+ */
 public interface HoaxRepository extends JpaRepository<Hoax, Long>, JpaSpecificationExecutor<Hoax> {
-    Page<Hoax> findByUser(User user, Pageable pageable);
+    @Override
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Page<Hoax> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Page<Hoax> findAll(Specification<Hoax> spec, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Slice<Hoax> findByIdLessThan(long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Slice<Hoax> findByIdGreaterThan(long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    List<Hoax> findAllByOrderByIdDesc(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    List<Hoax> findByIdIn(Collection<Long> ids);
+
+    @Query("select h.id from Hoax h order by h.id desc")
+    List<Long> findLatestIds(Pageable pageable);
+
+    @Query("select h.id from Hoax h where h.user.id = :userId order by h.id desc")
+    List<Long> findLatestIdsOfUser(@Param("userId") long userId, Pageable pageable);
+
+    @Query("select h.user.id from Hoax h where h.id = :id")
+    Optional<Long> findOwnerId(@Param("id") long id);
+
+    /**
+     * Deletes without loading the hoax, so no {@code @PostRemove} callback fires; the caller publishes the
+     * {@link HoaxDeletedEvent}.
+     */
+    @Modifying
+    @Query("delete from Hoax h where h.id = :id and h.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") long id, @Param("userId") long userId);
 }
@@ -1,10 +1,8 @@
 package com.hoaxify.hoaxify.hoax;
 
-import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
-
 @Service
 public class HoaxSecurityService {
 
@@ -15,12 +13,9 @@ public class HoaxSecurityService {
     }
 
 
-    public boolean isAllowedToDelete(long hoaxId, User loggedInnUser){
-        Optional<Hoax> optionalHoax = hoaxRepository.findById(hoaxId);
-        if(optionalHoax.isPresent()){
-            Hoax inDB = optionalHoax.get();
-            return inDB.getUser().getId() == loggedInnUser.getId();
-        }
-        return false;
+    public boolean isAllowedToDelete(long hoaxId, AuthenticatedUser loggedInnUser){
+        return hoaxRepository.findOwnerId(hoaxId)
+                .map(ownerId -> ownerId == loggedInnUser.getId())
+                .orElse(false);
     }
 }
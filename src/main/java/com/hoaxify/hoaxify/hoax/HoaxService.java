@@ -1,21 +1,40 @@
 package com.hoaxify.hoaxify.hoax;
 
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.error.BadRequestException;
 import com.hoaxify.hoaxify.file.FileAttachment;
 import com.hoaxify.hoaxify.file.FileAttachmentRepository;
 import com.hoaxify.hoaxify.file.FileService;
+import com.hoaxify.hoaxify.hoax.vm.BatchItemResultVM;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.CursorPage;
 import com.hoaxify.hoaxify.user.User;
 import com.hoaxify.hoaxify.user.UserService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class HoaxService {
@@ -28,64 +47,226 @@ public class HoaxService {
 
     FileService fileService;
 
+    AppConfiguration appConfiguration;
+
+    HoaxIdIndex hoaxIdIndex;
+
+    HoaxTimeline hoaxTimeline;
+
+    HomeTimeline homeTimeline;
+
+    Validator validator;
+
+    ApplicationEventPublisher eventPublisher;
+
     public HoaxService(HoaxRepository hoaxRepository, UserService userService,
                        FileAttachmentRepository fileAttachmentRepository,
-                       FileService fileService) {
+                       FileService fileService, AppConfiguration appConfiguration,
+                       HoaxIdIndex hoaxIdIndex, HoaxTimeline hoaxTimeline, HomeTimeline homeTimeline,
+                       Validator validator, ApplicationEventPublisher eventPublisher) {
         this.hoaxRepository = hoaxRepository;
         this.userService = userService;
         this.fileAttachmentRepository = fileAttachmentRepository;
         this.fileService = fileService;
+        this.appConfiguration = appConfiguration;
+        this.hoaxIdIndex = hoaxIdIndex;
+        this.hoaxTimeline = hoaxTimeline;
+        this.homeTimeline = homeTimeline;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
     }
 
-    public Hoax save(User user, Hoax hoax) {
+    @Transactional
+    public Hoax save(long userId, Hoax hoax) {
         hoax.setTimestamp(new Date());
-        hoax.setUser(user);
+        hoax.setUser(userService.getById(userId));
         if (hoax.getAttachment() != null) {
             FileAttachment inDB = fileAttachmentRepository.findById(hoax.getAttachment().getId()).get();
             inDB.setHoax(hoax);
             hoax.setAttachment(inDB);
         }
-        return hoaxRepository.save(hoax);
+        Hoax saved = hoaxRepository.save(hoax);
+        hoaxTimeline.record(saved);
+        return saved;
     }
 
-    public Page<Hoax> getAllHoaxes(Pageable pageable) {
-        return hoaxRepository.findAll(pageable);
+    /**
+     * Validates every item, then inserts the valid ones in one transaction. Ids are time-ordered and generated in
+     * process, and the inserts are sent as JDBC batches, so the cost per hoax is a fraction of a single {@link #save}.
+     */
+    @Transactional
+    public List<BatchItemResultVM> saveAll(long userId, List<Hoax> hoaxes) {
+        int limit = appConfiguration.getFeed().getBatchLimit();
+        if (hoaxes.size() > limit) {
+            throw new BadRequestException("A batch can contain at most " + limit + " hoaxes");
+        }
+        User user = userService.getById(userId);
+        Date now = new Date();
+        Map<Long, FileAttachment> attachments = availableAttachmentsOf(hoaxes);
+        BatchItemResultVM[] results = new BatchItemResultVM[hoaxes.size()];
+        List<Hoax> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        for (int i = 0; i < hoaxes.size(); i++) {
+            Hoax hoax = hoaxes.get(i);
+            Map<String, String> validationErrors = validate(hoax);
+            FileAttachment attachment = null;
+            if (hoax != null && hoax.getAttachment() != null) {
+                attachment = attachments.get(hoax.getAttachment().getId());
+                if (attachment == null) {
+                    validationErrors.put("attachment", "Attachment is not available");
+                }
+            }
+            if (!validationErrors.isEmpty()) {
+                results[i] = BatchItemResultVM.rejected(i, validationErrors);
+                continue;
+            }
+            hoax.setId(0);
+            hoax.setTimestamp(now);
+            hoax.setUser(user);
+            if (attachment != null) {
+                // only an accepted hoax claims the attachment; a rejected one leaves it to later items
+                attachments.remove(attachment.getId());
+                attachment.setHoax(hoax);
+                hoax.setAttachment(attachment);
+            }
+            accepted.add(hoax);
+            acceptedIndexes.add(i);
+        }
+        hoaxRepository.saveAll(accepted);
+        hoaxTimeline.recordAll(accepted);
+        for (int i = 0; i < accepted.size(); i++) {
+            results[acceptedIndexes.get(i)] = BatchItemResultVM.created(acceptedIndexes.get(i), accepted.get(i).getId());
+        }
+        return Arrays.asList(results);
     }
 
-    public Page<Hoax> getHoaxesOfUser(String username, Pageable pageable) {
+    private Map<String, String> validate(Hoax hoax) {
+        Map<String, String> validationErrors = new HashMap<>();
+        if (hoax == null) {
+            validationErrors.put("hoax", "must not be null");
+            return validationErrors;
+        }
+        for (ConstraintViolation<Hoax> violation : validator.validate(hoax)) {
+            validationErrors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return validationErrors;
+    }
+
+    /**
+     * Loads the referenced attachments in one query, keeping only those not yet attached to a hoax.
+     */
+    private Map<Long, FileAttachment> availableAttachmentsOf(List<Hoax> hoaxes) {
+        Set<Long> ids = hoaxes.stream()
+                .filter(Objects::nonNull)
+                .map(Hoax::getAttachment)
+                .filter(Objects::nonNull)
+                .map(FileAttachment::getId)
+                .collect(Collectors.toCollection(HashSet::new));
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return fileAttachmentRepository.findAllById(ids).stream()
+                .filter(attachment -> attachment.getHoax() == null)
+                .collect(Collectors.toMap(FileAttachment::getId, Function.identity()));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<HoaxVM> getAllHoaxes(Pageable pageable) {
+        return hoaxRepository.findAll(pageable).map(HoaxVM::new);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<HoaxVM> getHoaxesOfUser(String username, Pageable pageable) {
         User inDB = userService.getByUsername(username);
-        return hoaxRepository.findByUser(inDB, pageable);
+        return hoaxTimeline.getHoaxes(inDB, pageable);
     }
 
-    public Page<Hoax> getOldHoaxes(long id, String username, Pageable pageable) {
-        Specification<Hoax> spec = Specification.where(idLessThan(id));
+    @Transactional(readOnly = true)
+    public Page<HoaxVM> getOldHoaxes(long id, String username, Pageable pageable) {
         if (username != null) {
             User inDB = userService.getByUsername(username);
-            spec = spec.and(userIs(inDB));
+            return hoaxTimeline.getOldHoaxes(inDB, id, pageable);
         }
-        return hoaxRepository.findAll(spec, pageable);
+        return hoaxRepository.findAll(Specification.where(idLessThan(id)), pageable).map(HoaxVM::new);
     }
 
-    public List<Hoax> getNewHoaxes(long id, String username, Pageable pageable) {
-        Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+    @Transactional(readOnly = true)
+    public CursorPage<HoaxVM> getHoaxesBefore(long id, String username, int size) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id"));
         if (username != null) {
             User inDB = userService.getByUsername(username);
-            spec = spec.and(userIs(inDB));
+            return hoaxTimeline.getHoaxesBefore(inDB, id, pageable);
         }
-        return hoaxRepository.findAll(spec, pageable.getSort());
+        return CursorPage.of(hoaxRepository.findByIdLessThan(id, pageable), Hoax::getId).map(HoaxVM::new);
     }
 
-    public long getNewHoaxesCount(long id, String username) {
-        Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+    @Transactional(readOnly = true)
+    public CursorPage<HoaxVM> getHomeTimeline(long userId, long beforeId, int size) {
+        return homeTimeline.getHoaxes(userId, beforeId, size);
+    }
+
+    /**
+     * Returns at most {@code catchUpLimit} hoaxes newer than the given id, taking the oldest ones first so that a
+     * client which is far behind can resume from the newest id it received.
+     */
+    @Transactional(readOnly = true)
+    public List<HoaxVM> getNewHoaxes(long id, String username, Pageable pageable) {
+        List<HoaxVM> newHoaxes = new ArrayList<>(getHoaxesAfter(id, username, appConfiguration.getFeed().getCatchUpLimit()).getContent());
+        Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+        if (idOrder != null && idOrder.isDescending()) {
+            Collections.reverse(newHoaxes);
+        }
+        return newHoaxes;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<HoaxVM> getHoaxesAfter(long id, String username, int size) {
+        return findHoaxesAfter(id, username, size);
+    }
+
+    private CursorPage<HoaxVM> findHoaxesAfter(long id, String username, int size) {
+        int boundedSize = Math.min(size, appConfiguration.getFeed().getCatchUpLimit());
+        Pageable pageable = PageRequest.of(0, boundedSize, Sort.by(Sort.Direction.ASC, "id"));
         if (username != null) {
             User inDB = userService.getByUsername(username);
-            spec = spec.and(userIs(inDB));
+            return hoaxTimeline.getHoaxesAfter(inDB, id, pageable);
+        }
+        return CursorPage.of(hoaxRepository.findByIdGreaterThan(id, pageable), Hoax::getId).map(HoaxVM::new);
+    }
+
+    /**
+     * Hands hoaxes newer than the given id to the consumer in ascending batches, stopping after
+     * {@code streamLimit} hoaxes so that only one batch is held in memory at a time. Runs without a surrounding
+     * transaction so that no connection is held while a batch is written to the client.
+     */
+    public void streamNewHoaxes(long id, String username, Consumer<List<HoaxVM>> consumer) {
+        int remaining = appConfiguration.getFeed().getStreamLimit();
+        long afterId = id;
+        while (remaining > 0) {
+            CursorPage<HoaxVM> batch = findHoaxesAfter(afterId, username, remaining);
+            if (batch.getContent().isEmpty()) {
+                return;
+            }
+            consumer.accept(batch.getContent());
+            remaining -= batch.getContent().size();
+            if (!batch.hasNext()) {
+                return;
+            }
+            afterId = batch.getContent().get(batch.getContent().size() - 1).getId();
         }
-        return hoaxRepository.count(spec);
     }
 
-    private Specification<Hoax> userIs(User user) {
-        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("user"), user);
+    @Transactional(readOnly = true)
+    public long getNewHoaxesCount(long id, String username) {
+        long indexed = hoaxIdIndex.countNewerThan(id, username);
+        if (indexed >= 0) {
+            return indexed;
+        }
+        if (username != null) {
+            User inDB = userService.getByUsername(username);
+            return hoaxTimeline.countNewerThan(inDB, id);
+        }
+        return hoaxRepository.count(Specification.where(idGreaterThan(id)));
     }
 
     private Specification<Hoax> idLessThan(long id) {
@@ -96,11 +277,27 @@ public class HoaxService {
         return (root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.get("id"), id);
     }
 
+    @Transactional
     public void deleteHoax(long id) {
-        Hoax hoax = hoaxRepository.getOne(id);
-        if(hoax.getAttachment() != null){
-            fileService.deleteAttachmentImage(hoax.getAttachment().getName());
+        hoaxRepository.findOwnerId(id).ifPresent(ownerId -> deleteHoax(id, ownerId));
+    }
+
+    /**
+     * Deletes the hoax only if it belongs to the given user, with conditional bulk deletes instead of loading the
+     * hoax and its attachment first. Returns whether a hoax was deleted.
+     */
+    @Transactional
+    public boolean deleteHoax(long id, long userId) {
+        Optional<String> attachmentName = fileAttachmentRepository.findNameByHoaxIdAndUserId(id, userId);
+        if (attachmentName.isPresent()) {
+            fileAttachmentRepository.deleteByHoaxId(id);
+        }
+        if (hoaxRepository.deleteByIdAndUserId(id, userId) == 0) {
+            return false;
         }
-        hoaxRepository.deleteById(id);
+        hoaxTimeline.remove(id);
+        eventPublisher.publishEvent(new HoaxDeletedEvent(id, userId));
+        attachmentName.ifPresent(fileService::deleteAttachmentImage);
+        return true;
     }
 }
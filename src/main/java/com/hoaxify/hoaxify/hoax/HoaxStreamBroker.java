@@ -0,0 +1,349 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.CursorPage;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdGenerator;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes the ids of newly committed hoaxes to Server-Sent Events subscribers, either for the whole feed or for a
+ * single user. Every subscriber has a bounded buffer that is drained on a small executor; a subscriber that falls
+ * behind is disconnected and catches up through Last-Event-ID when it reconnects.
+ * <p>
+ * A clustered instance does not push its own commits, which would reach only its own subscribers; it polls the
+ * database every {@code pollInterval} for hoaxes of the last {@code pollLag} instead, whichever node saved them, and
+ * pushes those it has not pushed yet.
+ */
+@Component
+public class HoaxStreamBroker {
+
+    public static final String EVENT_NAME = "hoax";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter overflows;
+
+    /**
+     * Every hoax with a greater id that has been committed is found by the next poll; -1 while nobody subscribes.
+     */
+    private long polledFrom = -1;
+
+    /**
+     * Ids above {@link #polledFrom} that have been pushed already.
+     */
+    private final TreeSet<Long> polled = new TreeSet<>();
+
+    HoaxService hoaxService;
+
+    UserService userService;
+
+    AppConfiguration appConfiguration;
+
+    public HoaxStreamBroker(HoaxService hoaxService, UserService userService,
+                            AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.hoaxService = hoaxService;
+        this.userService = userService;
+        this.appConfiguration = appConfiguration;
+        int threads = Math.max(1, appConfiguration.getStream().getThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hoax-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.overflows = Counter.builder("hoaxify.stream.overflow").register(meterRegistry);
+        Gauge.builder("hoaxify.stream.subscribers", subscribers, Set::size).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String username, Long lastEventId) {
+        Long userId = null;
+        if (username != null) {
+            User inDB = userService.getByUsername(username);
+            userId = inDB.getId();
+        }
+        AppConfiguration.Stream config = appConfiguration.getStream();
+        SseEmitter emitter = new SseEmitter(config.getTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, userId, config.getBufferSize(), lastEventId != null);
+        emitter.onCompletion(() -> end(subscriber));
+        emitter.onError(e -> end(subscriber));
+        if (appConfiguration.isClustered()) {
+            synchronized (polled) {
+                if (polledFrom < 0) {
+                    polledFrom = TimeOrderedIdGenerator.firstIdAt(System.currentTimeMillis()) - 1;
+                }
+            }
+        }
+        subscribers.add(subscriber);
+        try {
+            subscriber.send(SseEmitter.event().reconnectTime(config.getReconnect().toMillis()).comment("connected"));
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            return emitter;
+        }
+        if (lastEventId != null) {
+            int limit = Math.min(config.getBufferSize(), appConfiguration.getFeed().getCatchUpLimit());
+            try {
+                CursorPage<HoaxVM> page = hoaxService.getHoaxesAfter(lastEventId, username, limit);
+                List<HoaxCreatedEvent> missed = page.getContent().stream()
+                        .map(hoax -> new HoaxCreatedEvent(hoax.getId(), hoax.getUser().getId()))
+                        .collect(Collectors.toList());
+                subscriber.offerAll(missed, page.hasNext());
+            } catch (RuntimeException e) {
+                subscribers.remove(subscriber);
+                throw e;
+            }
+            subscriber.paused = false;
+            schedule(subscriber);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxCreated(HoaxCreatedEvent event) {
+        if (!appConfiguration.isClustered()) {
+            publish(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@appConfiguration.stream.pollInterval.toMillis()}")
+    public void pollCommitted() {
+        if (!appConfiguration.isClustered()) {
+            return;
+        }
+        synchronized (polled) {
+            if (subscribers.isEmpty()) {
+                polledFrom = -1;
+                polled.clear();
+                return;
+            }
+            long floor = TimeOrderedIdGenerator.firstIdAt(
+                    System.currentTimeMillis() - appConfiguration.getStream().getPollLag().toMillis()) - 1;
+            long afterId = polledFrom;
+            CursorPage<HoaxVM> page;
+            do {
+                page = hoaxService.getHoaxesAfter(afterId, null, appConfiguration.getFeed().getCatchUpLimit());
+                for (HoaxVM hoax : page.getContent()) {
+                    if (polled.add(hoax.getId())) {
+                        publish(new HoaxCreatedEvent(hoax.getId(), hoax.getUser().getId()));
+                    }
+                    afterId = hoax.getId();
+                }
+            } while (page.hasNext() && !page.getContent().isEmpty());
+            polledFrom = Math.max(polledFrom, floor);
+            polled.headSet(polledFrom, true).clear();
+        }
+    }
+
+    private void publish(HoaxCreatedEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.userId != null && subscriber.userId != event.getUserId()) {
+                continue;
+            }
+            if (subscriber.offer(event)) {
+                schedule(subscriber);
+            } else {
+                overflows.increment();
+                subscribers.remove(subscriber);
+                subscriber.complete();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@appConfiguration.stream.heartbeat.toMillis()}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        subscribers.forEach(Subscriber::complete);
+        subscribers.clear();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.paused) {
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            HoaxCreatedEvent event;
+            while ((event = subscriber.poll()) != null) {
+                subscriber.send(SseEmitter.event()
+                        .id(String.valueOf(event.getId()))
+                        .name(EVENT_NAME)
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the container reports the broken connection and completes the request itself; completing it from here
+            // as well can end up closing a connection that has since been handed to another request
+            subscribers.remove(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (subscriber.hasPending()) {
+            schedule(subscriber);
+        } else if (subscriber.closing) {
+            // the client reconnects with the last id it received and picks up the rest of the catch-up
+            subscribers.remove(subscriber);
+            subscriber.complete();
+        }
+    }
+
+    /**
+     * Called by the container when the request is over, before it recycles the response for another connection.
+     */
+    private void end(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.end();
+    }
+
+    private static class Subscriber {
+        final SseEmitter emitter;
+
+        final Long userId;
+
+        final int capacity;
+
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        /**
+         * Set while Last-Event-ID catch-up is loading, so live events are buffered but not sent ahead of it.
+         */
+        volatile boolean paused;
+
+        /**
+         * Set when the catch-up did not fit into one batch; live events are then dropped, since sending them would
+         * move the client's Last-Event-ID past the part it has not received, and the stream ends once the batch is
+         * sent.
+         */
+        volatile boolean closing;
+
+        private final Deque<HoaxCreatedEvent> buffer = new ArrayDeque<>();
+
+        /**
+         * Guards the emitter, which the drain, heartbeat and container threads all reach; once the request has ended
+         * nothing may be written, as the response object may already serve another request.
+         */
+        private final Object emitterLock = new Object();
+
+        private boolean ended;
+
+        Subscriber(SseEmitter emitter, Long userId, int capacity, boolean paused) {
+            this.emitter = emitter;
+            this.userId = userId;
+            this.capacity = capacity;
+            this.paused = paused;
+        }
+
+        void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (emitterLock) {
+                if (ended) {
+                    throw new IllegalStateException("The stream has ended");
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException e) {
+                    ended = true;
+                    throw e;
+                }
+            }
+        }
+
+        void complete() {
+            synchronized (emitterLock) {
+                if (!ended) {
+                    ended = true;
+                    emitter.complete();
+                }
+            }
+        }
+
+        void end() {
+            synchronized (emitterLock) {
+                ended = true;
+            }
+        }
+
+        synchronized boolean offer(HoaxCreatedEvent event) {
+            if (closing) {
+                return true;
+            }
+            if (buffer.size() >= capacity) {
+                return false;
+            }
+            buffer.addLast(event);
+            return true;
+        }
+
+        /**
+         * Merges catch-up events with anything that arrived live while they were being loaded, keeping id order. If
+         * there are more missed events than that, only the catch-up batch is kept and the subscriber starts closing.
+         */
+        synchronized void offerAll(List<HoaxCreatedEvent> events, boolean more) {
+            TreeSet<HoaxCreatedEvent> merged = new TreeSet<>(Comparator.comparingLong(HoaxCreatedEvent::getId));
+            merged.addAll(events);
+            if (!more) {
+                merged.addAll(buffer);
+            }
+            buffer.clear();
+            closing = more || merged.size() > capacity;
+            merged.stream().limit(capacity).forEach(buffer::addLast);
+        }
+
+        synchronized HoaxCreatedEvent poll() {
+            return buffer.pollFirst();
+        }
+
+        synchronized boolean hasPending() {
+            return !buffer.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.CursorPage;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.vm.UserVM;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read model behind the profile timelines. {@link HoaxService} writes and prunes entries in the same transaction as
+ * the hoax itself; the author is rendered from the user row that the username was resolved to, so a changed display
+ * name or image never leaves stale copies behind.
+ */
+@Component
+public class HoaxTimeline {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    HoaxTimelineRepository hoaxTimelineRepository;
+
+    HoaxRepository hoaxRepository;
+
+    public HoaxTimeline(HoaxTimelineRepository hoaxTimelineRepository, HoaxRepository hoaxRepository) {
+        this.hoaxTimelineRepository = hoaxTimelineRepository;
+        this.hoaxRepository = hoaxRepository;
+    }
+
+    public void record(Hoax hoax) {
+        hoaxTimelineRepository.save(new HoaxTimelineEntry(hoax));
+    }
+
+    public void recordAll(List<Hoax> hoaxes) {
+        hoaxTimelineRepository.saveAll(hoaxes.stream().map(HoaxTimelineEntry::new).collect(Collectors.toList()));
+    }
+
+    public void remove(long id) {
+        hoaxTimelineRepository.deleteEntry(id);
+    }
+
+    public Page<HoaxVM> getHoaxes(User user, Pageable pageable) {
+        UserVM author = new UserVM(user);
+        return hoaxTimelineRepository.findByUserId(user.getId(), pageable).map(entry -> new HoaxVM(entry, author));
+    }
+
+    public Page<HoaxVM> getOldHoaxes(User user, long id, Pageable pageable) {
+        UserVM author = new UserVM(user);
+        return hoaxTimelineRepository.findPageByUserIdAndIdLessThan(user.getId(), id, pageable)
+                .map(entry -> new HoaxVM(entry, author));
+    }
+
+    public CursorPage<HoaxVM> getHoaxesBefore(User user, long id, Pageable pageable) {
+        return toCursorPage(hoaxTimelineRepository.findByUserIdAndIdLessThan(user.getId(), id, pageable), user);
+    }
+
+    public CursorPage<HoaxVM> getHoaxesAfter(User user, long id, Pageable pageable) {
+        return toCursorPage(hoaxTimelineRepository.findByUserIdAndIdGreaterThan(user.getId(), id, pageable), user);
+    }
+
+    public long countNewerThan(User user, long id) {
+        return hoaxTimelineRepository.countByUserIdAndIdGreaterThan(user.getId(), id);
+    }
+
+    private CursorPage<HoaxVM> toCursorPage(Slice<HoaxTimelineEntry> slice, User user) {
+        UserVM author = new UserVM(user);
+        return CursorPage.of(slice, HoaxTimelineEntry::getId).map(entry -> new HoaxVM(entry, author));
+    }
+
+    /**
+     * Removes the entries of hoaxes that were deleted without going through {@link HoaxService}, e.g. by repository
+     * deletes; run by the storage cleanup. Returns how many entries were removed.
+     */
+    public int pruneDeleted() {
+        return hoaxTimelineRepository.deleteOrphans();
+    }
+
+    /**
+     * Copies hoaxes that have no entry yet, e.g. those created before the read model existed, in ascending id
+     * batches.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (hoaxTimelineRepository.count() >= hoaxRepository.count()) {
+            return;
+        }
+        long afterId = 0;
+        while (true) {
+            Pageable pageable = PageRequest.of(0, BACKFILL_BATCH_SIZE, Sort.by(Sort.Direction.ASC, "id"));
+            Slice<Hoax> batch = hoaxRepository.findByIdGreaterThan(afterId, pageable);
+            if (batch.getContent().isEmpty()) {
+                return;
+            }
+            List<Long> ids = batch.getContent().stream().map(Hoax::getId).collect(Collectors.toList());
+            Set<Long> existing = new HashSet<>(hoaxTimelineRepository.findExistingIds(ids));
+            hoaxTimelineRepository.saveAll(batch.getContent().stream()
+                    .filter(hoax -> hoax.getUser() != null && !existing.contains(hoax.getId()))
+                    .map(HoaxTimelineEntry::new)
+                    .collect(Collectors.toList()));
+            if (!batch.hasNext()) {
+                return;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.file.FileAttachment;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * One row per hoax, copied from {@link Hoax} when it is saved, so that a profile timeline is a range scan over
+ * {@code (user_id, id)} without joining the hoax or attachment tables. The id is the id of the hoax.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hoax_timeline", indexes = @Index(name = "idx_hoax_timeline_user_id", columnList = "user_id, id"))
+public class HoaxTimelineEntry implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+
+    @Column(length = 5000)
+    private String content;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date timestamp;
+
+    private String attachmentName;
+
+    private String attachmentFileType;
+
+    /**
+     * The id is copied from the hoax, so without this flag every save would be a merge that selects first.
+     */
+    @Transient
+    private boolean isNew = true;
+
+    public HoaxTimelineEntry(Hoax hoax) {
+        this.setId(hoax.getId());
+        this.setUserId(hoax.getUser().getId());
+        this.setContent(hoax.getContent());
+        this.setTimestamp(hoax.getTimestamp());
+        FileAttachment attachment = hoax.getAttachment();
+        if (attachment != null) {
+            this.setAttachmentName(attachment.getName());
+            this.setAttachmentFileType(attachment.getFileType());
+        }
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,43 @@
+package com.hoaxify.hoaxify.hoax;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface HoaxTimelineRepository extends JpaRepository<HoaxTimelineEntry, Long> {
+
+    Page<HoaxTimelineEntry> findByUserId(long userId, Pageable pageable);
+
+    Page<HoaxTimelineEntry> findPageByUserIdAndIdLessThan(long userId, long id, Pageable pageable);
+
+    Slice<HoaxTimelineEntry> findByUserIdAndIdLessThan(long userId, long id, Pageable pageable);
+
+    Slice<HoaxTimelineEntry> findByUserIdAndIdGreaterThan(long userId, long id, Pageable pageable);
+
+    long countByUserIdAndIdGreaterThan(long userId, long id);
+
+    @Query("select e.id from HoaxTimelineEntry e where e.userId in :userIds and e.id < :beforeId order by e.id desc")
+    List<Long> findIdsOfUsersBefore(@Param("userIds") Collection<Long> userIds, @Param("beforeId") long beforeId,
+                                    Pageable pageable);
+
+    @Query("select e.id from HoaxTimelineEntry e where e.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from HoaxTimelineEntry e where e.id = :id")
+    int deleteEntry(@Param("id") long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from HoaxTimelineEntry e where not exists (select h.id from Hoax h where h.id = e.id)")
+    int deleteOrphans();
+}
@@ -0,0 +1,258 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.error.ServiceUnavailableException;
+import com.hoaxify.hoaxify.file.FileAttachment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit for hoax creation: callers enqueue their hoax and block, while a single writer thread drains the
+ * queue into batches of up to {@code batchSize} hoaxes, waiting at most {@code maxDelay} for a batch to fill, and
+ * saves each batch in one transaction. A caller is answered only after its batch has committed, so the response has
+ * the same durability as a request that commits on its own, but a burst of requests shares one commit.
+ * <p>
+ * A caller that times out while its hoax is still queued takes it back and is told to try again; once the writer has
+ * taken the hoax into a batch the caller waits for the outcome instead, since only the commit tells whether it was
+ * saved.
+ * <p>
+ * The writer thread is started by the first submit, so it does not exist while group commit is disabled.
+ */
+@Component
+public class HoaxWriteQueue {
+
+    private final BlockingQueue<PendingHoax> queue;
+
+    private final int batchSize;
+
+    private final long maxDelayNanos;
+
+    private final long timeoutNanos;
+
+    private volatile Thread writer;
+
+    private final DistributionSummary batchSizes;
+
+    private final Timer queueLatency;
+
+    private final Counter rejected;
+
+    private volatile boolean running = true;
+
+    HoaxService hoaxService;
+
+    TransactionTemplate transactionTemplate;
+
+    public HoaxWriteQueue(HoaxService hoaxService, PlatformTransactionManager transactionManager,
+                          AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.hoaxService = hoaxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AppConfiguration.Write write = appConfiguration.getWrite();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, write.getQueueCapacity()));
+        this.batchSize = Math.max(1, write.getBatchSize());
+        this.maxDelayNanos = write.getMaxDelay().toNanos();
+        this.timeoutNanos = write.getTimeout().toNanos();
+        this.batchSizes = DistributionSummary.builder("hoaxify.hoax.write.batch").register(meterRegistry);
+        this.queueLatency = Timer.builder("hoaxify.hoax.write.queue").register(meterRegistry);
+        this.rejected = Counter.builder("hoaxify.hoax.write.rejected").register(meterRegistry);
+        Gauge.builder("hoaxify.hoax.write.pending", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Saves the hoax as part of the next batch and returns it once that batch has committed.
+     */
+    public Hoax submit(long userId, Hoax hoax) {
+        startWriter();
+        PendingHoax pending = new PendingHoax(userId, hoax);
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many hoaxes are being saved, try again later");
+        }
+        if (!running && queue.remove(pending)) {
+            throw new ServiceUnavailableException("The server is shutting down");
+        }
+        try {
+            return pending.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (pending.claim()) {
+                queue.remove(pending);
+                throw new ServiceUnavailableException("Saving the hoax took too long, try again later");
+            }
+            // the writer is saving it, so only the outcome of its batch tells whether the hoax exists
+            return outcomeOf(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Saving the hoax was interrupted");
+        } catch (ExecutionException e) {
+            throw failureOf(e);
+        }
+    }
+
+    private static Hoax outcomeOf(PendingHoax pending) {
+        try {
+            return pending.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Saving the hoax was interrupted");
+        } catch (ExecutionException e) {
+            throw failureOf(e);
+        }
+    }
+
+    private static RuntimeException failureOf(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writer == null && running) {
+                Thread thread = new Thread(this::run, "hoax-writer");
+                thread.setDaemon(true);
+                thread.start();
+                writer = thread;
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingHoax> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingHoax next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // callers that timed out before their hoax was taken have already been answered
+                batch.removeIf(pending -> !pending.claim());
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                try {
+                    commit(batch);
+                } catch (Throwable e) {
+                    // the writer must outlive any failure, or every later caller would wait for nothing
+                    batch.forEach(pending -> pending.result.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue.drainTo(batch);
+        batch.forEach(pending -> pending.result.completeExceptionally(
+                new ServiceUnavailableException("The server is shutting down")));
+    }
+
+    /**
+     * Saves the batch in one transaction. If any hoax fails, e.g. because its attachment is gone, the whole
+     * transaction rolls back and each hoax is retried in a transaction of its own, so only the failing callers see
+     * the error. The retry builds each hoax again from the request, as the rolled back session has changed the
+     * instances it was given. Errors are caught as well, so that no caller is left waiting.
+     */
+    private void commit(List<PendingHoax> batch) {
+        long now = System.nanoTime();
+        batch.forEach(pending -> queueLatency.record(now - pending.enqueuedAt, TimeUnit.NANOSECONDS));
+        batchSizes.record(batch.size());
+        List<Hoax> saved;
+        try {
+            saved = transactionTemplate.execute(status -> batch.stream()
+                    .map(pending -> hoaxService.save(pending.userId, pending.toHoax()))
+                    .collect(Collectors.toList()));
+        } catch (Throwable e) {
+            for (PendingHoax pending : batch) {
+                try {
+                    pending.result.complete(hoaxService.save(pending.userId, pending.toHoax()));
+                } catch (Throwable itemFailure) {
+                    pending.result.completeExceptionally(itemFailure);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(saved.get(i));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * The request data of a hoax, from which each save attempt gets an instance of its own.
+     */
+    private static class PendingHoax {
+        final long userId;
+
+        final String content;
+
+        final Long attachmentId;
+
+        final long enqueuedAt = System.nanoTime();
+
+        final CompletableFuture<Hoax> result = new CompletableFuture<>();
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingHoax(long userId, Hoax hoax) {
+            this.userId = userId;
+            this.content = hoax.getContent();
+            this.attachmentId = hoax.getAttachment() == null ? null : hoax.getAttachment().getId();
+        }
+
+        /**
+         * Returns true for whichever of the writer and the timed out caller asks first.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        Hoax toHoax() {
+            Hoax hoax = new Hoax();
+            hoax.setContent(content);
+            if (attachmentId != null) {
+                FileAttachment attachment = new FileAttachment();
+                attachment.setId(attachmentId);
+                hoax.setAttachment(attachment);
+            }
+            return hoax;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.CursorPage;
+import com.hoaxify.hoaxify.user.FollowChangedEvent;
+import com.hoaxify.hoaxify.user.FollowGraph;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Home feeds built by fan-out on write: the id of a new hoax is pushed into the buffer of every follower of its
+ * author, so reading a page is a slice of that buffer plus one lookup of the page's hoaxes. Authors with more than
+ * {@code fanOutLimit} followers are not pushed; their hoaxes are pulled with one query when a page is read. Pages
+ * older than a buffer holds are answered from the timeline read model directly, and so is every page on a clustered
+ * instance, whose buffers would miss the hoaxes and follows of other nodes.
+ */
+@Component
+public class HomeTimeline {
+
+    private final Map<Long, Home> homes;
+
+    private final Counter buffered;
+
+    private final Counter fallbacks;
+
+    FollowGraph followGraph;
+
+    HoaxTimelineRepository hoaxTimelineRepository;
+
+    HoaxRepository hoaxRepository;
+
+    AppConfiguration appConfiguration;
+
+    public HomeTimeline(FollowGraph followGraph, HoaxTimelineRepository hoaxTimelineRepository,
+                        HoaxRepository hoaxRepository, AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.followGraph = followGraph;
+        this.hoaxTimelineRepository = hoaxTimelineRepository;
+        this.hoaxRepository = hoaxRepository;
+        this.appConfiguration = appConfiguration;
+        int maxHomes = appConfiguration.getFeed().getHomeTimelines();
+        this.homes = new LinkedHashMap<Long, Home>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Home> eldest) {
+                return size() > maxHomes;
+            }
+        };
+        this.buffered = Counter.builder("hoaxify.feed.home").tag("result", "buffer").register(meterRegistry);
+        this.fallbacks = Counter.builder("hoaxify.feed.home").tag("result", "fallback").register(meterRegistry);
+    }
+
+    public CursorPage<HoaxVM> getHoaxes(long userId, long beforeId, int size) {
+        long[] followees = followGraph.followeesOf(userId);
+        if (followees.length == 0) {
+            return new CursorPage<>(Collections.emptyList(), size, null);
+        }
+        int limit = size + 1;
+        Home home = appConfiguration.isClustered() ? null : loadedHome(userId, followees);
+        long[] fromBuffer = home == null ? null : home.window.idsBefore(beforeId, limit);
+        long[] ids;
+        if (fromBuffer != null) {
+            buffered.increment();
+            ids = home.pulled.length == 0 ? fromBuffer : newestFirst(fromBuffer, idsBefore(home.pulled, beforeId, limit), limit);
+        } else {
+            fallbacks.increment();
+            ids = idsBefore(followees, beforeId, limit);
+        }
+        boolean hasNext = ids.length > size;
+        long[] pageIds = hasNext ? Arrays.copyOf(ids, size) : ids;
+        List<HoaxVM> content = load(pageIds);
+        String next = hasNext && pageIds.length > 0 ? CursorPage.encode(pageIds[pageIds.length - 1]) : null;
+        return new CursorPage<>(content, size, next);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxCreated(HoaxCreatedEvent event) {
+        for (Home home : homesOfFollowers(event.getUserId())) {
+            home.window.add(event.getId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxDeleted(HoaxDeletedEvent event) {
+        for (Home home : homesOfFollowers(event.getUserId())) {
+            home.window.remove(event.getId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFollowChanged(FollowChangedEvent event) {
+        synchronized (homes) {
+            homes.remove(event.getFollowerId());
+        }
+        dropHomesWithStaleFanOut(event.getFolloweeId());
+    }
+
+    /**
+     * A home decides which followees are pushed and which are pulled when it is loaded. Once a follow takes the
+     * author across {@code fanOutLimit}, homes of its followers that still have it on the other side would miss its
+     * new hoaxes, so they are dropped and reloaded on the next read. Well past the limit every such home has already
+     * been dropped, so large follower lists are not walked on every follow.
+     */
+    private void dropHomesWithStaleFanOut(long authorId) {
+        int limit = appConfiguration.getFeed().getFanOutLimit();
+        long[] followers = followGraph.followersOf(authorId);
+        if (followers.length > 2L * limit) {
+            return;
+        }
+        boolean pulled = followers.length > limit;
+        synchronized (homes) {
+            for (long follower : followers) {
+                Home home = homes.get(follower);
+                if (home != null && (Arrays.binarySearch(home.pulled, authorId) >= 0) != pulled) {
+                    homes.remove(follower);
+                }
+            }
+        }
+    }
+
+    private List<Home> homesOfFollowers(long authorId) {
+        long[] followers = followGraph.followersOf(authorId);
+        if (followers.length == 0 || followers.length > appConfiguration.getFeed().getFanOutLimit()) {
+            return Collections.emptyList();
+        }
+        List<Home> affected = new ArrayList<>();
+        synchronized (homes) {
+            for (long follower : followers) {
+                Home home = homes.get(follower);
+                if (home != null) {
+                    affected.add(home);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * The home is registered before its buffer is loaded, so hoaxes committed while the query runs are pushed into
+     * it rather than lost. Returns null while another request is loading it.
+     */
+    private Home loadedHome(long userId, long[] followees) {
+        int capacity = appConfiguration.getFeed().getHomeTimelineSize();
+        Home home;
+        synchronized (homes) {
+            home = homes.computeIfAbsent(userId, k -> new Home(new HoaxIdIndex.IdWindow(capacity)));
+        }
+        if (home.window.isLoaded()) {
+            return home;
+        }
+        if (!home.window.startLoading()) {
+            return null;
+        }
+        try {
+            long[] pulled = followGraph.withMoreFollowersThan(followees, appConfiguration.getFeed().getFanOutLimit());
+            long[] pushed = Arrays.stream(followees).filter(id -> Arrays.binarySearch(pulled, id) < 0).toArray();
+            home.pulled = pulled;
+            home.window.load(pushed.length == 0 ? Collections.emptyList()
+                    : hoaxTimelineRepository.findIdsOfUsersBefore(boxed(pushed), Long.MAX_VALUE, PageRequest.of(0, capacity)));
+        } catch (RuntimeException e) {
+            synchronized (homes) {
+                homes.remove(userId, home);
+            }
+            throw e;
+        }
+        return home;
+    }
+
+    private long[] idsBefore(long[] userIds, long beforeId, int limit) {
+        return hoaxTimelineRepository.findIdsOfUsersBefore(boxed(userIds), beforeId, PageRequest.of(0, limit))
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private List<HoaxVM> load(long[] ids) {
+        if (ids.length == 0) {
+            return Collections.emptyList();
+        }
+        Map<Long, Hoax> byId = hoaxRepository.findByIdIn(boxed(ids)).stream()
+                .collect(Collectors.toMap(Hoax::getId, Function.identity()));
+        List<HoaxVM> content = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Hoax hoax = byId.get(id);
+            if (hoax != null) {
+                content.add(new HoaxVM(hoax));
+            }
+        }
+        return content;
+    }
+
+    private static long[] newestFirst(long[] first, long[] second, int limit) {
+        return LongStream.concat(Arrays.stream(first), Arrays.stream(second))
+                .boxed()
+                .sorted(Collections.reverseOrder())
+                .distinct()
+                .limit(limit)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private static List<Long> boxed(long[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private static class Home {
+        final HoaxIdIndex.IdWindow window;
+
+        volatile long[] pulled = new long[0];
+
+        Home(HoaxIdIndex.IdWindow window) {
+            this.window = window;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.hoaxify.hoaxify.hoax;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.CursorPage;
+import com.hoaxify.hoaxify.user.UserChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the newest hoaxes of the global feed as ready-to-serialize {@link HoaxVM}s. Readers take the current
+ * immutable snapshot without locking; writers replace it with compare-and-set after a commit. Every read method
+ * returns null when the request reaches past the window, and the caller then asks the repository. A clustered
+ * instance never loads the snapshot, since it would not see commits of other nodes, and every read is a miss.
+ */
+@Component
+public class HotFeed {
+
+    private static final Snapshot NOT_LOADED = new Snapshot(new HoaxVM[0], Long.MAX_VALUE, 0, false);
+
+    private static final int LOAD_ATTEMPTS = 3;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(NOT_LOADED);
+
+    /**
+     * Bumped on every change so that a load racing with a commit is discarded instead of installed stale.
+     */
+    private final AtomicLong mutations = new AtomicLong();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    HoaxRepository hoaxRepository;
+
+    AppConfiguration appConfiguration;
+
+    public HotFeed(HoaxRepository hoaxRepository, AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.hoaxRepository = hoaxRepository;
+        this.appConfiguration = appConfiguration;
+        this.hits = Counter.builder("hoaxify.feed.hot").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hoaxify.feed.hot").tag("result", "miss").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (appConfiguration.isClustered()) {
+            return;
+        }
+        int capacity = Math.max(1, appConfiguration.getFeed().getHotFeedSize());
+        for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+            Snapshot current = snapshot.get();
+            long version = mutations.get();
+            List<Hoax> latest = hoaxRepository.findAllByOrderByIdDesc(PageRequest.of(0, capacity));
+            long total = hoaxRepository.count();
+            HoaxVM[] views = latest.stream().map(HoaxVM::new).toArray(HoaxVM[]::new);
+            long coveredFrom = views.length < capacity ? 0 : views[views.length - 1].getId() - 1;
+            Snapshot loaded = new Snapshot(views, coveredFrom, total, true);
+            if (mutations.get() == version && snapshot.compareAndSet(current, loaded)) {
+                return;
+            }
+        }
+    }
+
+    public Page<HoaxVM> getAllHoaxes(Pageable pageable) {
+        Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+        if (idOrder == null || !idOrder.isDescending() || pageable.getSort().stream().count() > 1) {
+            return null;
+        }
+        Snapshot current = loadedSnapshot();
+        long from = pageable.getOffset();
+        long to = from + pageable.getPageSize();
+        if (current == null || (to > current.views.length && current.coveredFrom != 0)) {
+            return miss();
+        }
+        hits.increment();
+        List<HoaxVM> content = current.slice((int) Math.min(from, current.views.length), (int) Math.min(to, current.views.length));
+        return new PageImpl<>(content, pageable, current.total);
+    }
+
+    public CursorPage<HoaxVM> getHoaxesBefore(long id, int size) {
+        Snapshot current = loadedSnapshot();
+        if (current == null || id <= current.coveredFrom) {
+            return miss();
+        }
+        int start = current.firstOlderThan(id);
+        boolean hasNext = start + size < current.views.length;
+        if (!hasNext && current.coveredFrom != 0) {
+            return miss();
+        }
+        hits.increment();
+        List<HoaxVM> content = current.slice(start, Math.min(start + size, current.views.length));
+        String next = hasNext && !content.isEmpty() ? CursorPage.encode(content.get(content.size() - 1).getId()) : null;
+        return new CursorPage<>(content, size, next);
+    }
+
+    public CursorPage<HoaxVM> getHoaxesAfter(long id, int size) {
+        Snapshot current = loadedSnapshot();
+        if (current == null || id < current.coveredFrom) {
+            return miss();
+        }
+        hits.increment();
+        int boundedSize = Math.min(size, appConfiguration.getFeed().getCatchUpLimit());
+        int end = current.firstOlderThan(id + 1);
+        int start = Math.max(0, end - boundedSize);
+        List<HoaxVM> content = new ArrayList<>(current.slice(start, end));
+        Collections.reverse(content);
+        String next = start > 0 && !content.isEmpty() ? CursorPage.encode(content.get(content.size() - 1).getId()) : null;
+        return new CursorPage<>(content, boundedSize, next);
+    }
+
+    public List<HoaxVM> getNewHoaxes(long id, Pageable pageable) {
+        CursorPage<HoaxVM> newer = getHoaxesAfter(id, appConfiguration.getFeed().getCatchUpLimit());
+        if (newer == null) {
+            return null;
+        }
+        List<HoaxVM> newHoaxes = new ArrayList<>(newer.getContent());
+        Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+        if (idOrder != null && idOrder.isDescending()) {
+            Collections.reverse(newHoaxes);
+        }
+        return newHoaxes;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxCreated(HoaxCreatedEvent event) {
+        mutations.incrementAndGet();
+        if (!snapshot.get().loaded) {
+            return;
+        }
+        HoaxVM view = event.getView() != null ? event.getView()
+                : hoaxRepository.findById(event.getId()).map(HoaxVM::new).orElse(null);
+        if (view == null) {
+            return;
+        }
+        int capacity = Math.max(1, appConfiguration.getFeed().getHotFeedSize());
+        snapshot.updateAndGet(current -> current.loaded ? current.add(view, capacity) : current);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onHoaxDeleted(HoaxDeletedEvent event) {
+        mutations.incrementAndGet();
+        snapshot.updateAndGet(current -> current.loaded ? current.remove(event.getId()) : current);
+    }
+
+    /**
+     * Display names and images are copied into every view, so a changed user drops the snapshot; the next read
+     * reloads it.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        mutations.incrementAndGet();
+        snapshot.set(NOT_LOADED);
+    }
+
+    private Snapshot loadedSnapshot() {
+        Snapshot current = snapshot.get();
+        if (!current.loaded) {
+            load();
+            current = snapshot.get();
+        }
+        return current.loaded ? current : null;
+    }
+
+    private <T> T miss() {
+        misses.increment();
+        return null;
+    }
+
+    private static class Snapshot {
+        /**
+         * Newest first.
+         */
+        final HoaxVM[] views;
+
+        /**
+         * Every hoax with an id greater than this is in {@link #views}; 0 means the whole table is.
+         */
+        final long coveredFrom;
+
+        final long total;
+
+        final boolean loaded;
+
+        Snapshot(HoaxVM[] views, long coveredFrom, long total, boolean loaded) {
+            this.views = views;
+            this.coveredFrom = coveredFrom;
+            this.total = total;
+            this.loaded = loaded;
+        }
+
+        List<HoaxVM> slice(int from, int to) {
+            return Collections.unmodifiableList(Arrays.asList(views).subList(from, to));
+        }
+
+        /**
+         * Index of the first view whose id is lower than {@code id}.
+         */
+        int firstOlderThan(long id) {
+            int low = 0;
+            int high = views.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (views[middle].getId() >= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Snapshot add(HoaxVM view, int capacity) {
+            if (view.getId() <= coveredFrom) {
+                return new Snapshot(views, coveredFrom, total + 1, true);
+            }
+            int position = firstOlderThan(view.getId());
+            if (position > 0 && views[position - 1].getId() == view.getId()) {
+                return this;
+            }
+            HoaxVM[] added = new HoaxVM[views.length + 1];
+            System.arraycopy(views, 0, added, 0, position);
+            added[position] = view;
+            System.arraycopy(views, position, added, position + 1, views.length - position);
+            long newCoveredFrom = coveredFrom;
+            if (added.length > capacity) {
+                newCoveredFrom = added[capacity].getId();
+                added = Arrays.copyOf(added, capacity);
+            }
+            return new Snapshot(added, newCoveredFrom, total + 1, true);
+        }
+
+        Snapshot remove(long id) {
+            int position = firstOlderThan(id + 1);
+            if (position >= views.length || views[position].getId() != id) {
+                return new Snapshot(views, coveredFrom, Math.max(0, total - 1), true);
+            }
+            HoaxVM[] removed = new HoaxVM[views.length - 1];
+            System.arraycopy(views, 0, removed, 0, position);
+            System.arraycopy(views, position + 1, removed, position, views.length - position - 1);
+            return new Snapshot(removed, coveredFrom, Math.max(0, total - 1), true);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.hoaxify.hoaxify.hoax.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(value = JsonInclude.Include.NON_NULL)
+public class BatchItemResultVM {
+    private int index;
+
+    private Long id;
+
+    private Map<String, String> validationErrors;
+
+    public static BatchItemResultVM created(int index, long id) {
+        return new BatchItemResultVM(index, id, null);
+    }
+
+    public static BatchItemResultVM rejected(int index, Map<String, String> validationErrors) {
+        return new BatchItemResultVM(index, null, validationErrors);
+    }
+}
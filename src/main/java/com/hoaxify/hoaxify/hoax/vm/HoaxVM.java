@@ -3,6 +3,7 @@ package com.hoaxify.hoaxify.hoax.vm;
 
 import com.hoaxify.hoaxify.file.vm.FileAttachmentVM;
 import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxTimelineEntry;
 import com.hoaxify.hoaxify.user.vm.UserVM;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,4 +26,17 @@ public class HoaxVM {
             this.setAttachment(new FileAttachmentVM(hoax.getAttachment()));
         }
     }
+
+    public HoaxVM(HoaxTimelineEntry entry, UserVM user) {
+        this.setId(entry.getId());
+        this.setContent(entry.getContent());
+        this.setDate(entry.getTimestamp().getTime());
+        this.setUser(user);
+        if (entry.getAttachmentName() != null) {
+            FileAttachmentVM attachment = new FileAttachmentVM();
+            attachment.setName(entry.getAttachmentName());
+            attachment.setFileType(entry.getAttachmentFileType());
+            this.setAttachment(attachment);
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.hoaxify.hoaxify.shared;
+
+import com.hoaxify.hoaxify.user.User;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Value
+@AllArgsConstructor
+public class AuthenticatedUser implements Serializable {
+    private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList("Role_USER");
+
+    long id;
+
+    String username;
+
+    String displayName;
+
+    long credentialVersion;
+
+    public AuthenticatedUser(User user) {
+        this(user.getId(), user.getUsername(), user.getDisplayName(), user.getCredentialVersion());
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+}
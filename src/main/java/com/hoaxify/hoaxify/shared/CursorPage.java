@@ -0,0 +1,75 @@
+package com.hoaxify.hoaxify.shared;
+
+import com.hoaxify.hoaxify.error.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A page of results addressed by an opaque cursor instead of an offset. The cursor encodes the id of the
+ * last element, so fetching the next page is an index range scan and no count query is needed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+
+    private int size;
+
+    private String next;
+
+    public static <T> CursorPage<T> of(Slice<T> slice, ToLongFunction<T> idOf) {
+        List<T> content = slice.getContent();
+        String next = null;
+        if (slice.hasNext() && !content.isEmpty()) {
+            next = encode(idOf.applyAsLong(content.get(content.size() - 1)));
+        }
+        return new CursorPage<>(content, slice.getSize(), next);
+    }
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> converter) {
+        List<R> converted = content.stream().map(converter).collect(Collectors.toList());
+        return new CursorPage<>(converted, size, next);
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public static String encode(long id) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Returns the id held by the cursor, or {@code whenEmpty} if the cursor is blank (first page).
+     */
+    public static long decode(String cursor, long whenEmpty) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return whenEmpty;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (bytes.length != Long.BYTES) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        long id = ByteBuffer.wrap(bytes).getLong();
+        if (id <= 0) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        return id;
+    }
+}
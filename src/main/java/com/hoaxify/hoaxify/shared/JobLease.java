@@ -0,0 +1,35 @@
+package com.hoaxify.hoaxify.shared;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A lock on a scheduled job, or on one partition of it, shared by every node through the database. The owner keeps
+ * the lease while it renews it in time; once {@code lockedUntil} has passed any node may take it over. {@code host}
+ * records the machine the owner runs on, for the leases endpoint.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "job_lease")
+public class JobLease {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false)
+    private String owner;
+
+    private String host;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date acquiredAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    private Date lockedUntil;
+}
@@ -0,0 +1,27 @@
+package com.hoaxify.hoaxify.shared;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Shows which node, and on which host, holds which lease, at /actuator/leases.
+ */
+@Component
+@Endpoint(id = "leases")
+public class JobLeaseEndpoint {
+
+    JobLeaseRepository jobLeaseRepository;
+
+    public JobLeaseEndpoint(JobLeaseRepository jobLeaseRepository) {
+        this.jobLeaseRepository = jobLeaseRepository;
+    }
+
+    @ReadOperation
+    public List<JobLease> leases() {
+        return jobLeaseRepository.findAll(Sort.by("name"));
+    }
+}
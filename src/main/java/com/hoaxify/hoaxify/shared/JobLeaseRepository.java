@@ -0,0 +1,34 @@
+package com.hoaxify.hoaxify.shared;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /**
+     * Fails with a key violation if another node created the lease first; a merge through save() would overwrite it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into job_lease (name, owner, host, acquired_at, locked_until)"
+            + " values (:name, :owner, :host, :now, :until)", nativeQuery = true)
+    int insert(@Param("name") String name, @Param("owner") String owner, @Param("host") String host,
+               @Param("now") Date now, @Param("until") Date until);
+
+    @Transactional
+    @Modifying
+    @Query("update JobLease l set l.owner = :owner, l.host = :host, l.acquiredAt = :now, l.lockedUntil = :until"
+            + " where l.name = :name and l.lockedUntil <= :now")
+    int takeOver(@Param("name") String name, @Param("owner") String owner, @Param("host") String host,
+                 @Param("now") Date now, @Param("until") Date until);
+
+    @Transactional
+    @Modifying
+    @Query("update JobLease l set l.lockedUntil = :until where l.name = :name and l.owner = :owner")
+    int extend(@Param("name") String name, @Param("owner") String owner, @Param("until") Date until);
+}
@@ -0,0 +1,102 @@
+package com.hoaxify.hoaxify.shared;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets scheduled jobs run on one node at a time. Every statement commits on its own and only the row's owner and
+ * expiry decide who holds a lease, so a node that dies simply stops renewing and its lease is taken over once it
+ * expires. Expiry compares the nodes' own clocks, which are assumed to be kept in sync.
+ */
+@Component
+public class JobLeases {
+
+    private final String owner;
+
+    private final String host;
+
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    JobLeaseRepository jobLeaseRepository;
+
+    public JobLeases(JobLeaseRepository jobLeaseRepository, AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.owner = "node-" + appConfiguration.resolveNodeId() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        this.host = localHostName();
+        Gauge.builder("hoaxify.leases.held", held, Set::size).register(meterRegistry);
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies this node in the owner column of the leases it holds: its node id and a random suffix that tells
+     * restarts, or nodes left on the default id, apart.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * The host name stored next to the owner, so the loopback-only leases endpoint shows where each lease is held;
+     * null if the local host name cannot be resolved.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Takes the lease for {@code ttl} unless another node holds it.
+     */
+    public boolean acquire(String name, Duration ttl) {
+        Date now = new Date();
+        Date until = new Date(now.getTime() + ttl.toMillis());
+        if (jobLeaseRepository.takeOver(name, owner, host, now, until) > 0) {
+            held.add(name);
+            return true;
+        }
+        try {
+            jobLeaseRepository.insert(name, owner, host, now, until);
+        } catch (DataIntegrityViolationException e) {
+            // held by another node
+            return false;
+        }
+        held.add(name);
+        return true;
+    }
+
+    /**
+     * Extends a lease this node holds by another {@code ttl}, and returns false if it has been taken over meanwhile.
+     */
+    public boolean renew(String name, Duration ttl) {
+        if (jobLeaseRepository.extend(name, owner, new Date(System.currentTimeMillis() + ttl.toMillis())) > 0) {
+            return true;
+        }
+        held.remove(name);
+        return false;
+    }
+
+    /**
+     * Gives the lease up, keeping it locked until {@code until} so that no node runs the job again before then.
+     */
+    public void release(String name, Date until) {
+        jobLeaseRepository.extend(name, owner, new Date(Math.max(until.getTime(), System.currentTimeMillis())));
+        held.remove(name);
+    }
+}
@@ -1,12 +1,10 @@
 package com.hoaxify.hoaxify.shared;
 
 import com.hoaxify.hoaxify.file.FileService;
-import org.apache.commons.io.FileUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.Base64;
 
 public class ProfileImageValidator implements ConstraintValidator<ProfileImage, String> {
 
@@ -19,8 +17,7 @@ public class ProfileImageValidator implements ConstraintValidator<ProfileImage,
             return true;
         }
 
-        byte[] decodedBytes = Base64.getDecoder().decode(value);
-        String fileType = fileService.detectType(decodedBytes);
+        String fileType = fileService.detectBase64Type(value);
         if (fileType.equalsIgnoreCase("image/png") ||
                 fileType.equalsIgnoreCase("image/jpeg")) {
             return true;
@@ -0,0 +1,79 @@
+package com.hoaxify.hoaxify.shared;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.jdbc.connections.spi.JdbcConnectionAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Hibernate adapter for {@link TimeOrderedIdGenerator}. Entities opt in with
+ * {@code @GenericGenerator(name = NAME, strategy = STRATEGY)}; the node id is read from the {@value #NODE_ID_SETTING}
+ * Hibernate setting.
+ * <p>
+ * Before the first id is generated the generator is seeded with the highest id already in the entity's table, read
+ * on a connection of its own so the caller's session is not flushed. A node restarted with its clock behind the last
+ * run therefore continues above the ids it persisted instead of reissuing them.
+ */
+public class TimeOrderedIdentifierGenerator implements IdentifierGenerator {
+
+    public static final String NAME = "time_ordered";
+
+    public static final String STRATEGY = "com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator";
+
+    public static final String NODE_ID_SETTING = "hoaxify.node_id";
+
+    private TimeOrderedIdGenerator generator;
+
+    private String maxIdQuery;
+
+    private volatile boolean seeded;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        String nodeId = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(NODE_ID_SETTING, StandardConverters.STRING, "0");
+        this.generator = new TimeOrderedIdGenerator(Integer.parseInt(nodeId.trim()));
+        this.maxIdQuery = "select max(" + params.getProperty(PersistentIdentifierGenerator.PK) + ") from "
+                + params.getProperty(PersistentIdentifierGenerator.TABLE);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (!seeded) {
+            seed(session.getJdbcConnectionAccess());
+        }
+        return generator.nextId();
+    }
+
+    private synchronized void seed(JdbcConnectionAccess connectionAccess) {
+        if (seeded) {
+            return;
+        }
+        try {
+            Connection connection = connectionAccess.obtainConnection();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(maxIdQuery)) {
+                if (result.next()) {
+                    generator.seed(result.getLong(1));
+                }
+            } finally {
+                connectionAccess.releaseConnection(connection);
+            }
+        } catch (SQLException e) {
+            throw new HibernateException("Could not read the highest persisted id with: " + maxIdQuery, e);
+        }
+        seeded = true;
+    }
+}
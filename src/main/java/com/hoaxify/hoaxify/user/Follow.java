@@ -0,0 +1,32 @@
+package com.hoaxify.hoaxify.user;
+
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_follow_follower_followee", columnNames = {"follower_id", "followee_id"}),
+        indexes = @Index(name = "idx_follow_followee", columnList = "followee_id"))
+@EntityListeners(FollowEntityListener.class)
+public class Follow {
+    @Id
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private User follower;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private User followee;
+
+    public Follow(User follower, User followee) {
+        this.follower = follower;
+        this.followee = followee;
+    }
+}
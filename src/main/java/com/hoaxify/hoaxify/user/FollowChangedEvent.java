@@ -0,0 +1,12 @@
+package com.hoaxify.hoaxify.user;
+
+import lombok.Value;
+
+@Value
+public class FollowChangedEvent {
+    long followerId;
+
+    long followeeId;
+
+    boolean following;
+}
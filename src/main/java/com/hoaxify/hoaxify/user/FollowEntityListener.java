@@ -0,0 +1,23 @@
+package com.hoaxify.hoaxify.user;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+public class FollowEntityListener {
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void followed(Follow follow) {
+        eventPublisher.publishEvent(new FollowChangedEvent(follow.getFollower().getId(), follow.getFollowee().getId(), true));
+    }
+
+    @PostRemove
+    public void unfollowed(Follow follow) {
+        eventPublisher.publishEvent(new FollowChangedEvent(follow.getFollower().getId(), follow.getFollowee().getId(), false));
+    }
+}
@@ -0,0 +1,113 @@
+package com.hoaxify.hoaxify.user;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps follower and followee lists of recently active users as sorted {@code long[]} so that fan-out walks a
+ * primitive array instead of loading entities. Lists are loaded on first use and dropped when a follow of that
+ * user changes. A clustered instance never sees follows changed on other nodes, so it loads the lists every time.
+ */
+@Component
+public class FollowGraph {
+
+    private static final long[] NONE = new long[0];
+
+    private final Map<Long, long[]> followers;
+
+    private final Map<Long, long[]> followees;
+
+    /**
+     * Bumped on every change so that a list loaded concurrently with a commit is not cached stale.
+     */
+    private long generation;
+
+    FollowRepository followRepository;
+
+    AppConfiguration appConfiguration;
+
+    public FollowGraph(FollowRepository followRepository, AppConfiguration appConfiguration) {
+        this.followRepository = followRepository;
+        this.appConfiguration = appConfiguration;
+        int maxUsers = appConfiguration.getFeed().getFollowGraphSize();
+        this.followers = lruMap(maxUsers);
+        this.followees = lruMap(maxUsers);
+    }
+
+    public long[] followersOf(long userId) {
+        return adjacency(followers, userId, followRepository::findFollowerIds);
+    }
+
+    public long[] followeesOf(long userId) {
+        return adjacency(followees, userId, followRepository::findFolloweeIds);
+    }
+
+    /**
+     * Returns those of the given users that have more than {@code limit} followers, in one grouped query.
+     */
+    public long[] withMoreFollowersThan(long[] userIds, long limit) {
+        if (userIds.length == 0) {
+            return NONE;
+        }
+        List<Long> ids = Arrays.stream(userIds).boxed().collect(Collectors.toList());
+        return followRepository.findFolloweesWithMoreFollowersThan(ids, limit).stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * Runs ahead of other listeners of the same event, so that they read the lists as they are after the change.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFollowChanged(FollowChangedEvent event) {
+        synchronized (this) {
+            generation++;
+            followers.remove(event.getFolloweeId());
+            followees.remove(event.getFollowerId());
+        }
+    }
+
+    private long[] adjacency(Map<Long, long[]> lists, long userId, Function<Long, List<Long>> loader) {
+        if (appConfiguration.isClustered()) {
+            return sorted(loader.apply(userId));
+        }
+        long version;
+        synchronized (this) {
+            long[] cached = lists.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            version = generation;
+        }
+        long[] loaded = sorted(loader.apply(userId));
+        synchronized (this) {
+            if (generation == version) {
+                lists.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private static long[] sorted(List<Long> ids) {
+        return ids.isEmpty() ? NONE : ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static Map<Long, long[]> lruMap(int maxSize) {
+        return new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
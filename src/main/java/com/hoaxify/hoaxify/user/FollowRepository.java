@@ -0,0 +1,25 @@
+package com.hoaxify.hoaxify.user;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FollowRepository extends JpaRepository<Follow, Long> {
+
+    Follow findByFollowerIdAndFolloweeId(long followerId, long followeeId);
+
+    @Query("select f.follower.id from Follow f where f.followee.id = :userId")
+    List<Long> findFollowerIds(@Param("userId") long userId);
+
+    @Query("select f.followee.id from Follow f where f.follower.id = :userId")
+    List<Long> findFolloweeIds(@Param("userId") long userId);
+
+    /**
+     * Returns those of the given users that have more than {@code limit} followers.
+     */
+    @Query("select f.followee.id from Follow f where f.followee.id in :userIds group by f.followee.id having count(f) > :limit")
+    List<Long> findFolloweesWithMoreFollowersThan(@Param("userIds") Collection<Long> userIds, @Param("limit") long limit);
+}
@@ -1,13 +1,24 @@
 package com.hoaxify.hoaxify.user;
 
+import com.hoaxify.hoaxify.configuration.TokenService;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
 import com.hoaxify.hoaxify.shared.CurrentUser;
-import com.hoaxify.hoaxify.user.vm.UserVM;
+import com.hoaxify.hoaxify.user.vm.LoginVM;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 public class LoginController {
+
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    UserService userService;
+
     @PostMapping("/api/1.0/login")
-    UserVM handleLogin(@CurrentUser User loggedInUser) {
-        return new UserVM(loggedInUser);
+    LoginVM handleLogin(@CurrentUser AuthenticatedUser loggedInUser) {
+        User user = userService.getById(loggedInUser.getId());
+        return new LoginVM(user, tokenService.issue(loggedInUser));
     }
 }
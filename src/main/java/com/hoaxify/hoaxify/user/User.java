@@ -1,8 +1,12 @@
 package com.hoaxify.hoaxify.user;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -18,9 +22,11 @@ import java.util.List;
 @Data
 @Entity
 @Table(name = "users")
+@EntityListeners(UserEntityListener.class)
 public class User implements UserDetails {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = TimeOrderedIdentifierGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdentifierGenerator.NAME, strategy = TimeOrderedIdentifierGenerator.STRATEGY)
     private long id;
 
     @NotNull(message = "{hoaxify.constraints.username.NotNull.message}")
@@ -39,9 +45,28 @@ public class User implements UserDetails {
 
     private String image;
 
+    @JsonIgnore
+    @ColumnDefault("0")
+    private long credentialVersion;
+
     @OneToMany(mappedBy = "user")
     private List<Hoax> hoaxes;
 
+    /**
+     * Sets an already encoded password and revokes the tokens issued for the old one.
+     */
+    public void changePassword(String encodedPassword) {
+        this.password = encodedPassword;
+        this.credentialVersion++;
+    }
+
+    /**
+     * Replaces the hash with a new one of the same password, e.g. at a higher cost; issued tokens stay valid.
+     */
+    public void rehashPassword(String encodedPassword) {
+        this.password = encodedPassword;
+    }
+
     @Override
     @Transient
     public Collection<? extends GrantedAuthority> getAuthorities() {
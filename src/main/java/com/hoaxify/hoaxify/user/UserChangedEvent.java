@@ -0,0 +1,10 @@
+package com.hoaxify.hoaxify.user;
+
+import lombok.Value;
+
+@Value
+public class UserChangedEvent {
+    long id;
+
+    String username;
+}
@@ -2,11 +2,13 @@ package com.hoaxify.hoaxify.user;
 
 import com.fasterxml.jackson.annotation.JsonView;
 import com.hoaxify.hoaxify.error.ApiError;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
 import com.hoaxify.hoaxify.shared.CurrentUser;
 import com.hoaxify.hoaxify.shared.GenericResponse;
 import com.hoaxify.hoaxify.user.vm.UpdateUserVM;
 import com.hoaxify.hoaxify.user.vm.UserVM;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -36,8 +38,9 @@ public class UserController {
     }
 
     @GetMapping("/users")
-    Page<UserVM> getUsers(@CurrentUser User loggedUser, Pageable page) {
-        return userService.getUsers(loggedUser, page).map(UserVM::new);
+    Page<UserVM> getUsers(@CurrentUser AuthenticatedUser loggedUser, Pageable page) {
+        String loggedInUsername = loggedUser == null ? null : loggedUser.getUsername();
+        return userService.getUsers(loggedInUsername, page);
     }
 
     @GetMapping("/users/{username}")
@@ -52,4 +55,20 @@ public class UserController {
         User user = userService.update(id, userUpdate);
         return new UserVM(user);
     }
+
+    @PostMapping("/users/{username}/follow")
+    GenericResponse follow(@PathVariable String username, @CurrentUser AuthenticatedUser loggedUser) {
+        try {
+            userService.follow(loggedUser.getId(), username);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent request saved the same follow first, so this one failed on the unique constraint
+        }
+        return new GenericResponse("Following " + username);
+    }
+
+    @DeleteMapping("/users/{username}/follow")
+    GenericResponse unfollow(@PathVariable String username, @CurrentUser AuthenticatedUser loggedUser) {
+        userService.unfollow(loggedUser.getId(), username);
+        return new GenericResponse("Unfollowed " + username);
+    }
 }
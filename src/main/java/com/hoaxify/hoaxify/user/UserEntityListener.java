@@ -0,0 +1,19 @@
+package com.hoaxify.hoaxify.user;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class UserEntityListener {
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getUsername()));
+    }
+}
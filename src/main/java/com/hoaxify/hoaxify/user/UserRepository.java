@@ -3,9 +3,16 @@ package com.hoaxify.hoaxify.user;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     User findByUsername(String username);
 
     Page<User> findByUsernameNot(String username, Pageable pageable);
+
+    @Query("select u.credentialVersion from User u where u.id = :id")
+    Optional<Long> findCredentialVersion(@Param("id") long id);
 }
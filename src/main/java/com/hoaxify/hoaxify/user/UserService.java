@@ -1,31 +1,47 @@
 package com.hoaxify.hoaxify.user;
 
+import com.hoaxify.hoaxify.error.BadRequestException;
 import com.hoaxify.hoaxify.error.NotFoundException;
+import com.hoaxify.hoaxify.file.ContentStore;
 import com.hoaxify.hoaxify.file.FileService;
 import com.hoaxify.hoaxify.user.vm.UpdateUserVM;
+import com.hoaxify.hoaxify.user.vm.UserVM;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.UUID;
 
 @Service
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     UserRepository userRepository;
 
     PasswordEncoder passwordEncoder;
 
     FileService fileService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FileService fileService) {
+    ContentStore contentStore;
+
+    FollowRepository followRepository;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FileService fileService,
+                       ContentStore contentStore, FollowRepository followRepository) {
         super();
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.fileService = fileService;
+        this.contentStore = contentStore;
+        this.followRepository = followRepository;
     }
 
     public User save(User user) {
@@ -33,13 +49,15 @@ public class UserService {
         return userRepository.save(user);
     }
 
-    public Page<User> getUsers(User loggedUser, Pageable page) {
-        if (loggedUser != null) {
-            return userRepository.findByUsernameNot(loggedUser.getUsername(), page);
+    @Transactional(readOnly = true)
+    public Page<UserVM> getUsers(String loggedInUsername, Pageable page) {
+        if (loggedInUsername != null) {
+            return userRepository.findByUsernameNot(loggedInUsername, page).map(UserVM::new);
         }
-        return userRepository.findAll(page);
+        return userRepository.findAll(page).map(UserVM::new);
     }
 
+    @Transactional(readOnly = true)
     public User getByUsername(String username) {
         User inDB = userRepository.findByUsername(username);
         if (inDB == null) {
@@ -48,18 +66,59 @@ public class UserService {
         return inDB;
     }
 
+    @Transactional(readOnly = true)
+    public User getById(long id) {
+        return userRepository.findById(id).orElseThrow(() -> new NotFoundException("User not found"));
+    }
+
+    /**
+     * Writes a new image before the transaction that references it and updates the user; see
+     * {@link FileService#storeProfileImage}.
+     */
     public User update(long id, UpdateUserVM userUpdate) {
-        User inDB = userRepository.getById(id);
-        inDB.setDisplayName(userUpdate.getDisplayName());
+        FileService.ProfileImage image = null;
         if (userUpdate.getImage() != null) {
             try {
-                String savedImageName = fileService.saveProfileImage(userUpdate.getImage());
-                fileService.deleteProfileImage(inDB.getImage());
-                inDB.setImage(savedImageName);
+                image = fileService.storeProfileImage(userUpdate.getImage());
             } catch (IOException e) {
-                e.printStackTrace();
+                // the new image was not stored, so the user keeps the old one
+                log.warn("Could not store the new profile image of user {}", id, e);
+            }
+        }
+        FileService.ProfileImage newImage = image;
+        return contentStore.inTransaction(status -> {
+            User inDB = userRepository.getById(id);
+            inDB.setDisplayName(userUpdate.getDisplayName());
+            if (newImage != null) {
+                try {
+                    String savedImageName = fileService.referenceProfileImage(newImage);
+                    fileService.deleteProfileImage(inDB.getImage());
+                    inDB.setImage(savedImageName);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
+            return userRepository.save(inDB);
+        });
+    }
+
+    @Transactional
+    public void follow(long followerId, String username) {
+        User followee = getByUsername(username);
+        if (followee.getId() == followerId) {
+            throw new BadRequestException("You cannot follow yourself");
+        }
+        if (followRepository.findByFollowerIdAndFolloweeId(followerId, followee.getId()) == null) {
+            followRepository.save(new Follow(userRepository.getById(followerId), followee));
+        }
+    }
+
+    @Transactional
+    public void unfollow(long followerId, String username) {
+        User followee = getByUsername(username);
+        Follow follow = followRepository.findByFollowerIdAndFolloweeId(followerId, followee.getId());
+        if (follow != null) {
+            followRepository.delete(follow);
         }
-        return userRepository.save(inDB);
     }
 }
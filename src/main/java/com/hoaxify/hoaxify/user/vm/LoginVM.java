@@ -0,0 +1,18 @@
+package com.hoaxify.hoaxify.user.vm;
+
+import com.hoaxify.hoaxify.user.User;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class LoginVM extends UserVM {
+    private String token;
+
+    public LoginVM(User user, String token) {
+        super(user);
+        this.setToken(token);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.CachingAuthenticationProvider;
+import com.hoaxify.hoaxify.configuration.PasswordHashExecutor;
+import com.hoaxify.hoaxify.configuration.VerifiedCredentialCache;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CachingAuthenticationProviderTest {
+
+    VerifiedCredentialCache verifiedCredentialCache;
+
+    UserDetailsService userDetailsService;
+
+    PasswordEncoder passwordEncoder;
+
+    CachingAuthenticationProvider authenticationProvider;
+
+    @BeforeEach
+    public void init() {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        verifiedCredentialCache = new VerifiedCredentialCache(appConfiguration, meterRegistry);
+        userDetailsService = Mockito.mock(UserDetailsService.class);
+        passwordEncoder = Mockito.mock(PasswordEncoder.class);
+        authenticationProvider = new CachingAuthenticationProvider(verifiedCredentialCache,
+                new PasswordHashExecutor(appConfiguration, meterRegistry));
+        authenticationProvider.setUserDetailsService(userDetailsService);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        verifiedCredentialCache.put(verifiedCredentialCache.keyOf("user1", "P4ssword"),
+                new AuthenticatedUser(1, "user1", "display1", 0));
+    }
+
+    private Authentication login() {
+        return authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("user1", "P4ssword"));
+    }
+
+    private User.UserBuilder account() {
+        return User.withUsername("user1").password("hash").authorities("Role_USER");
+    }
+
+    @Test
+    public void authenticate_whenCredentialsAreCachedAndAccountIsActive_skipsPasswordHash() {
+        Mockito.when(userDetailsService.loadUserByUsername("user1")).thenReturn(account().build());
+        assertThat(((AuthenticatedUser) login().getPrincipal()).getUsername()).isEqualTo("user1");
+        Mockito.verifyNoInteractions(passwordEncoder);
+    }
+
+    @Test
+    public void authenticate_whenCredentialsAreCachedAndAccountIsDisabled_throwsDisabledException() {
+        Mockito.when(userDetailsService.loadUserByUsername("user1")).thenReturn(account().disabled(true).build());
+        assertThatThrownBy(this::login).isInstanceOf(DisabledException.class);
+    }
+
+    @Test
+    public void authenticate_whenCredentialsAreCachedAndAccountIsLocked_throwsLockedException() {
+        Mockito.when(userDetailsService.loadUserByUsername("user1")).thenReturn(account().accountLocked(true).build());
+        assertThatThrownBy(this::login).isInstanceOf(LockedException.class);
+    }
+
+    @Test
+    public void authenticate_whenCredentialsAreCachedAndAccountIsGone_throwsBadCredentialsException() {
+        Mockito.when(userDetailsService.loadUserByUsername("user1")).thenThrow(new UsernameNotFoundException("user1"));
+        assertThatThrownBy(this::login).isInstanceOf(BadCredentialsException.class);
+    }
+}
@@ -0,0 +1,122 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileJob;
+import com.hoaxify.hoaxify.file.FileJobQueue;
+import com.hoaxify.hoaxify.file.FileJobRepository;
+import com.hoaxify.hoaxify.file.FileJobStatus;
+import com.hoaxify.hoaxify.file.FileJobType;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class FileJobQueueTest {
+
+    @Autowired
+    FileJobQueue fileJobQueue;
+
+    @Autowired
+    FileJobRepository fileJobRepository;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    private int maxAttempts;
+
+    @BeforeEach
+    public void init() {
+        fileJobRepository.deleteAll();
+        maxAttempts = appConfiguration.getJobs().getMaxAttempts();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        appConfiguration.getJobs().setMaxAttempts(maxAttempts);
+        fileJobRepository.deleteAll();
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+    }
+
+    private File createAttachmentFile(String name) throws IOException {
+        File file = new File(appConfiguration.getFullAttachmentsPath() + "/" + name);
+        FileUtils.writeStringToFile(file, "content", "UTF-8");
+        return file;
+    }
+
+    /**
+     * A non-empty directory in place of the file makes every delete attempt fail.
+     */
+    private void createUndeletable(String name) throws IOException {
+        createAttachmentFile(name + "/child");
+    }
+
+    @Test
+    public void runDueJobs_whenDeleteJobIsSubmitted_fileIsDeletedAndJobIsRemoved() throws IOException {
+        File file = createAttachmentFile("to-delete");
+        fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, "to-delete");
+        fileJobQueue.runDueJobs();
+        assertThat(file.exists()).isFalse();
+        assertThat(fileJobRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void runDueJobs_whenJobFails_jobIsRescheduledWithBackoff() throws IOException {
+        createUndeletable("stuck");
+        fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, "stuck");
+        fileJobQueue.runDueJobs();
+        FileJob job = fileJobRepository.findAll().get(0);
+        assertThat(job.getStatus()).isEqualTo(FileJobStatus.PENDING);
+        assertThat(job.getAttempts()).isEqualTo(1);
+        assertThat(job.getRunAt()).isAfter(new Date());
+        assertThat(job.getLastError()).isNotNull();
+    }
+
+    @Test
+    public void runDueJobs_whenJobFailsMaxAttempts_jobIsMarkedDead() throws IOException {
+        appConfiguration.getJobs().setMaxAttempts(1);
+        createUndeletable("stuck");
+        fileJobQueue.submit(FileJobType.DELETE_ATTACHMENT, "stuck");
+        fileJobQueue.runDueJobs();
+        FileJob job = fileJobRepository.findAll().get(0);
+        assertThat(job.getStatus()).isEqualTo(FileJobStatus.DEAD);
+        assertThat(fileJobQueue.runDueJobs()).isEqualTo(0);
+    }
+
+    @Test
+    public void claim_whenTwoNodesClaimTheSameJob_onlyOneSucceeds() {
+        FileJob job = fileJobRepository.save(new FileJob(FileJobType.DELETE_ATTACHMENT, "claimed"));
+        Date now = new Date();
+        Date until = new Date(now.getTime() + 60 * 1000);
+        assertThat(fileJobRepository.claim(job.getId(), now, until)).isEqualTo(1);
+        assertThat(fileJobRepository.claim(job.getId(), now, until)).isEqualTo(0);
+    }
+
+    @Test
+    public void runDueJobs_whenJobIsClaimedByAnotherNode_jobRunsOnlyAfterClaimExpires() throws IOException {
+        File file = createAttachmentFile("claimed");
+        // saved without submit, so no wake-up races the claim below
+        FileJob job = fileJobRepository.save(new FileJob(FileJobType.DELETE_ATTACHMENT, "claimed"));
+        fileJobRepository.claim(job.getId(), new Date(), new Date(System.currentTimeMillis() + 60 * 1000));
+
+        assertThat(fileJobQueue.runDueJobs()).isEqualTo(0);
+        assertThat(file.exists()).isTrue();
+
+        List<FileJob> jobs = fileJobRepository.findAll();
+        jobs.get(0).setRunAt(new Date(System.currentTimeMillis() - 1000));
+        fileJobRepository.saveAll(jobs);
+        assertThat(fileJobQueue.runDueJobs()).isEqualTo(1);
+        assertThat(file.exists()).isFalse();
+    }
+}
@@ -1,9 +1,17 @@
 package com.hoaxify.hoaxify;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.ContentStore;
 import com.hoaxify.hoaxify.file.FileAttachment;
 import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileContent;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.FileJobQueue;
 import com.hoaxify.hoaxify.file.FileService;
+import com.hoaxify.hoaxify.file.LocalStorageBackend;
+import com.hoaxify.hoaxify.hoax.HoaxTimeline;
+import com.hoaxify.hoaxify.shared.JobLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,14 +21,26 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -32,15 +52,33 @@ public class FileServiceTest {
 
     AppConfiguration appConfiguration;
 
+    LocalStorageBackend storageBackend;
+
+    PlatformTransactionManager transactionManager;
+
     @MockBean
     FileAttachmentRepository fileAttachmentRepository;
 
+    @MockBean
+    FileJobQueue fileJobQueue;
+
+    @MockBean
+    FileContentRepository fileContentRepository;
+
     @BeforeEach
     public void init() {
         appConfiguration = new AppConfiguration();
         appConfiguration.setUploadPath("uploads-test");
 
-        fileService = new FileService(appConfiguration, fileAttachmentRepository);
+        storageBackend = new LocalStorageBackend(appConfiguration.getUploadPath(), Collections.emptyList());
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        ContentStore contentStore = new ContentStore(fileContentRepository, storageBackend, transactionManager,
+                new SimpleMeterRegistry());
+        JobLeases jobLeases = Mockito.mock(JobLeases.class);
+        Mockito.when(jobLeases.acquire(Mockito.anyString(), Mockito.any(Duration.class))).thenReturn(true);
+        Mockito.when(jobLeases.renew(Mockito.anyString(), Mockito.any(Duration.class))).thenReturn(true);
+        fileService = new FileService(appConfiguration, fileAttachmentRepository, fileJobQueue, storageBackend,
+                contentStore, jobLeases, Mockito.mock(HoaxTimeline.class), transactionManager, new SimpleMeterRegistry());
 
         new File(appConfiguration.getUploadPath()).mkdir();
         new File(appConfiguration.getFullProfileImagesPath()).mkdir();
@@ -73,7 +111,8 @@ public class FileServiceTest {
         fileAttachment.setId(5);
         fileAttachment.setName(fileName);
 
-        Mockito.when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(Mockito.any(Date.class)))
+        Mockito.when(fileAttachmentRepository.findOrphans(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyInt(),
+                Mockito.eq(0), Mockito.any(Pageable.class)))
                 .thenReturn(Collections.singletonList(fileAttachment));
 
         fileService.cleanupStorage();
@@ -93,11 +132,62 @@ public class FileServiceTest {
         fileAttachment.setId(5);
         fileAttachment.setName(fileName);
 
-        Mockito.when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(Mockito.any(Date.class)))
+        Mockito.when(fileAttachmentRepository.findOrphans(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyInt(),
+                Mockito.eq(0), Mockito.any(Pageable.class)))
                 .thenReturn(Arrays.asList(fileAttachment));
 
         fileService.cleanupStorage();
-        Mockito.verify(fileAttachmentRepository).deleteById(5L);
+        Mockito.verify(fileAttachmentRepository).deleteByIdIn(Collections.singletonList(5L));
+    }
+
+    @Test
+    public void saveAttachment_whenContentRowIsInsertedConcurrently_runsAgainAndTakesReference() {
+        Mockito.when(fileContentRepository.incrementRefCount(Mockito.anyString(), Mockito.anyString())).thenReturn(0, 1);
+        Mockito.when(fileContentRepository.saveAndFlush(Mockito.any(FileContent.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_file_content_folder_name"));
+        Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class))).then(invocation -> invocation.getArgument(0));
+
+        FileAttachment attachment = fileService.saveAttachment(
+                new MockMultipartFile("file", "notes.txt", null, "some notes".getBytes(StandardCharsets.UTF_8)));
+
+        Mockito.verify(fileContentRepository, Mockito.times(2)).incrementRefCount(appConfiguration.getAttachmentsFolder(), attachment.getName());
+        Mockito.verify(fileAttachmentRepository, Mockito.times(1)).save(Mockito.any(FileAttachment.class));
+    }
+
+    @Test
+    public void saveAttachment_whenContentIsNew_writesBytesBeforeTransactionBegins() throws IOException {
+        Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class))).then(invocation -> invocation.getArgument(0));
+        byte[] content = "some notes".getBytes(StandardCharsets.UTF_8);
+        List<Boolean> storedWhenTransactionBegan = new ArrayList<>();
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).then(invocation -> {
+            storedWhenTransactionBegan.add(
+                    storageBackend.find(appConfiguration.getAttachmentsFolder(), sha256Hex(content)) != null);
+            return null;
+        });
+
+        fileService.saveAttachment(new MockMultipartFile("file", "notes.txt", null, content));
+
+        assertThat(storedWhenTransactionBegan).containsExactly(true);
     }
 
+    @Test
+    public void referenceProfileImage_whenBytesWereDeletedAfterStoring_writesThemAgain() throws IOException {
+        byte[] content = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+        FileService.ProfileImage image = fileService.storeProfileImage(Base64.getEncoder().encodeToString(content));
+        String name = sha256Hex(content);
+        storageBackend.delete(appConfiguration.getProfileImagesFolder(), name);
+        Mockito.when(fileContentRepository.incrementRefCount(appConfiguration.getProfileImagesFolder(), name)).thenReturn(1);
+
+        assertThat(fileService.referenceProfileImage(image)).isEqualTo(name);
+        assertThat(storageBackend.find(appConfiguration.getProfileImagesFolder(), name)).isNotNull();
+        Mockito.verifyNoInteractions(transactionManager);
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            return String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.file.FileTypeDetector;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ResourceUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileTypeDetectorTest {
+
+    FileTypeDetector fileTypeDetector = new FileTypeDetector();
+
+    private static byte[] readFile(String name) throws IOException {
+        return FileUtils.readFileToByteArray(ResourceUtils.getFile("classpath:" + name));
+    }
+
+    @Test
+    public void detect_whenPngFileProvided_returnImagePng() throws IOException {
+        assertThat(fileTypeDetector.detect(readFile("test-png.png"))).isEqualTo("image/png");
+    }
+
+    @Test
+    public void detect_whenJpgFileProvided_returnImageJpeg() throws IOException {
+        assertThat(fileTypeDetector.detect(readFile("test-jpg.jpg"))).isEqualTo("image/jpeg");
+    }
+
+    @Test
+    public void detect_whenGifFileProvided_returnImageGif() throws IOException {
+        assertThat(fileTypeDetector.detect(readFile("test-gif.gif"))).isEqualTo("image/gif");
+    }
+
+    @Test
+    public void detect_whenWebpHeaderProvided_returnImageWebp() {
+        byte[] header = "RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(fileTypeDetector.detect(header)).isEqualTo("image/webp");
+    }
+
+    @Test
+    public void detect_whenPdfHeaderProvided_returnApplicationPdf() {
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(fileTypeDetector.detect(header)).isEqualTo("application/pdf");
+    }
+
+    @Test
+    public void detect_whenSignatureIsUnknown_fallsBackToTika() throws IOException {
+        byte[] text = readFile("test-txt.txt");
+        assertThat(FileTypeDetector.sniff(text, 0, text.length)).isNull();
+        assertThat(fileTypeDetector.detect(text)).isEqualTo("text/plain");
+    }
+
+    @Test
+    public void detect_whenSignatureIsCutShort_doesNotMatch() throws IOException {
+        byte[] png = readFile("test-png.png");
+        assertThat(FileTypeDetector.sniff(png, 0, 7)).isNull();
+    }
+
+    @Test
+    public void detect_whenRangeOfLargerArrayProvided_detectsTypeOfRange() throws IOException {
+        byte[] png = readFile("test-png.png");
+        byte[] buffer = new byte[png.length + 10];
+        System.arraycopy(png, 0, buffer, 10, png.length);
+        assertThat(fileTypeDetector.detect(buffer, 10, png.length)).isEqualTo("image/png");
+    }
+
+    @Test
+    public void detectBase64_whenImagesProvided_matchesDetectionOfDecodedBytes() throws IOException {
+        for (String name : new String[]{"profile.png", "test-png.png", "test-jpg.jpg", "test-gif.gif", "test-txt.txt"}) {
+            byte[] bytes = readFile(name);
+            String base64 = Base64.getEncoder().encodeToString(bytes);
+            assertThat(fileTypeDetector.detectBase64(base64)).isEqualTo(fileTypeDetector.detect(bytes));
+        }
+    }
+}
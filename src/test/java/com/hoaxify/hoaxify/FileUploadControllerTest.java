@@ -1,10 +1,15 @@
 package com.hoaxify.hoaxify;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.ContentStore;
 import com.hoaxify.hoaxify.file.FileAttachment;
 import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.StorageBackend;
 import com.hoaxify.hoaxify.user.UserRepository;
 import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,16 +19,28 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -44,16 +61,36 @@ public class FileUploadControllerTest {
     @Autowired
     FileAttachmentRepository fileAttachmentRepository;
 
+    @Autowired
+    StorageBackend storageBackend;
+
+    @Autowired
+    FileContentRepository fileContentRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ContentStore contentStore;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private DataSize attachmentMaxSize;
+
     @BeforeEach
     public void init() throws IOException {
+        attachmentMaxSize = appConfiguration.getAttachmentMaxSize();
         userRepository.deleteAll();
         fileAttachmentRepository.deleteAll();
+        fileContentRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
 
     @AfterEach
     public void cleanup() throws IOException {
+        appConfiguration.setAttachmentMaxSize(attachmentMaxSize);
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
 
@@ -65,9 +102,12 @@ public class FileUploadControllerTest {
     }
 
     private static HttpEntity<MultiValueMap<String, Object>> getRequestEntity() {
-        ClassPathResource imageResource = new ClassPathResource("profile.png");
+        return getRequestEntity(new ClassPathResource("profile.png"));
+    }
+
+    private static HttpEntity<MultiValueMap<String, Object>> getRequestEntity(Resource resource) {
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", imageResource);
+        body.add("file", resource);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
@@ -121,16 +161,14 @@ public class FileUploadControllerTest {
     }
 
     @Test
-    public void uploadFile_withImageFromAuthorizedUser_imageSavedToFolder() {
+    public void uploadFile_withImageFromAuthorizedUser_imageSavedToFolder() throws IOException {
         String username = "user1";
         userService.save(TestUtil.createValidUser(username));
         authenticate(username);
 
         ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(), new ParameterizedTypeReference<FileAttachment>() {
         });
-        String imagePath = appConfiguration.getFullAttachmentsPath() + "/" + response.getBody().getName();
-        File storedImage = new File(imagePath);
-        assertThat(storedImage.exists()).isTrue();
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), response.getBody().getName())).isNotNull();
     }
 
     @Test
@@ -156,4 +194,118 @@ public class FileUploadControllerTest {
         assertThat(storedFile.getFileType()).isEqualTo("image/png");
     }
 
+    @Test
+    public void uploadFile_whenFileIsLargerThanLimit_receivePayloadTooLarge() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        appConfiguration.setAttachmentMaxSize(DataSize.ofKilobytes(1));
+
+        ResponseEntity<Object> response = uploadFile(getRequestEntity(), new ParameterizedTypeReference<Object>() {
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @Test
+    public void uploadFile_whenFileIsLargerThanLimit_partialFileIsRemovedAndNothingIsSaved() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        appConfiguration.setAttachmentMaxSize(DataSize.ofKilobytes(1));
+
+        uploadFile(getRequestEntity(), new ParameterizedTypeReference<Object>() {
+        });
+        assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+        assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).isEmpty();
+    }
+
+    @Test
+    public void uploadFile_whenFileIsLargerThanCopyBuffer_storedFileHasSameContent() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        File large = File.createTempFile("large-upload", ".bin");
+        try {
+            byte[] chunk = new byte[1024 * 1024];
+            new Random(42).nextBytes(chunk);
+            for (int i = 0; i < 4; i++) {
+                FileUtils.writeByteArrayToFile(large, chunk, true);
+            }
+
+            ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(new FileSystemResource(large)),
+                    new ParameterizedTypeReference<FileAttachment>() {
+                    });
+            File stored = storageBackend.find(appConfiguration.getAttachmentsFolder(), response.getBody().getName()).getLocalPath().toFile();
+            assertThat(FileUtils.contentEquals(large, stored)).isTrue();
+            assertThat(response.getBody().getFileType()).isEqualTo("application/octet-stream");
+        } finally {
+            large.delete();
+        }
+    }
+
+    @Test
+    public void uploadFile_whenSameContentIsUploadedTwice_fileIsStoredOnceUnderItsHash() throws Exception {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        Counter bytesSaved = meterRegistry.get("hoaxify.storage.dedup.saved").counter();
+        double savedBefore = bytesSaved.count();
+
+        FileAttachment first = uploadFile(getRequestEntity(), new ParameterizedTypeReference<FileAttachment>() {
+        }).getBody();
+        FileAttachment second = uploadFile(getRequestEntity(), new ParameterizedTypeReference<FileAttachment>() {
+        }).getBody();
+
+        byte[] content = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+        String hash = new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)).toString(16);
+        assertThat(first.getName()).isEqualTo(String.format("%64s", hash).replace(' ', '0'));
+        assertThat(second.getName()).isEqualTo(first.getName());
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getAttachmentsFolder(), first.getName())).contains(2);
+        assertThat(bytesSaved.count() - savedBefore).isEqualTo(content.length);
+    }
+
+    @Test
+    public void uploadFile_whenSameNewContentIsInsertedByUncommittedTransaction_takesReferenceOnceItCommits() throws Exception {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        byte[] content = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+        String name = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        CountDownLatch inserted = new CountDownLatch(1);
+
+        CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    contentStore.acquire(appConfiguration.getAttachmentsFolder(), name, content.length);
+                    inserted.countDown();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        inserted.await();
+
+        ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(), new ParameterizedTypeReference<FileAttachment>() {
+        });
+        concurrent.join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getName()).isEqualTo(name);
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getAttachmentsFolder(), name)).contains(2);
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), name)).isNotNull();
+    }
+
+    @Test
+    public void acquire_whenCallerTransactionRollsBack_leavesNoReference() {
+        String name = String.format("%064x", 1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            contentStore.acquire(appConfiguration.getAttachmentsFolder(), name, 3);
+            status.setRollbackOnly();
+        });
+
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getAttachmentsFolder(), name)).isEmpty();
+    }
+
+    @Test
+    public void acquire_whenCalledOutsideTransaction_throwsIllegalTransactionStateException() {
+        assertThatThrownBy(() -> contentStore.acquire(appConfiguration.getAttachmentsFolder(), String.format("%064x", 1), 3))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
 }
@@ -1,19 +1,27 @@
 package com.hoaxify.hoaxify;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.TokenService;
 import com.hoaxify.hoaxify.error.ApiError;
 import com.hoaxify.hoaxify.file.FileAttachment;
 import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.FileJobQueue;
 import com.hoaxify.hoaxify.file.FileService;
+import com.hoaxify.hoaxify.file.StorageBackend;
 import com.hoaxify.hoaxify.hoax.Hoax;
 import com.hoaxify.hoaxify.hoax.HoaxRepository;
 import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.vm.BatchItemResultVM;
 import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
 import com.hoaxify.hoaxify.shared.GenericResponse;
 import com.hoaxify.hoaxify.user.User;
 import com.hoaxify.hoaxify.user.UserRepository;
 import com.hoaxify.hoaxify.user.UserService;
 import org.apache.commons.io.FileUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,8 +30,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.mock.web.MockMultipartFile;
@@ -35,6 +47,9 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -71,6 +86,18 @@ public class HoaxControllerTest {
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    FileJobQueue fileJobQueue;
+
+    @Autowired
+    StorageBackend storageBackend;
+
+    @Autowired
+    FileContentRepository fileContentRepository;
+
+    @Autowired
+    TokenService tokenService;
+
     @PersistenceUnit
     private EntityManagerFactory entityManagerFactory;
 
@@ -81,11 +108,22 @@ public class HoaxControllerTest {
                 .add(new BasicAuthenticationInterceptor(username, "P4ssword"));
     }
 
+    private void authenticateWithToken(String token) {
+        testRestTemplate
+                .getRestTemplate()
+                .getInterceptors()
+                .add((request, body, execution) -> {
+                    request.getHeaders().setBearerAuth(token);
+                    return execution.execute(request, body);
+                });
+    }
+
     @BeforeEach
     public void cleanup() throws IOException {
         fileAttachmentRepository.deleteAll();
         hoaxRepository.deleteAll();
         userRepository.deleteAll();
+        fileContentRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
@@ -101,6 +139,12 @@ public class HoaxControllerTest {
         return testRestTemplate.postForEntity(API_1_0_HOAXES, hoax, responseType);
     }
 
+    private ResponseEntity<List<BatchItemResultVM>> postHoaxes(List<Hoax> hoaxes) {
+        return testRestTemplate.exchange(API_1_0_HOAXES + "/batch", HttpMethod.POST, new HttpEntity<>(hoaxes),
+                new ParameterizedTypeReference<List<BatchItemResultVM>>() {
+                });
+    }
+
     private <T> ResponseEntity<T> getHoaxes(ParameterizedTypeReference<T> responseType) {
         return testRestTemplate.exchange(API_1_0_HOAXES, HttpMethod.GET, null, responseType);
     }
@@ -120,6 +164,11 @@ public class HoaxControllerTest {
         return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
     }
 
+    private ResponseEntity<TestCursorPage<HoaxVM>> getHoaxesByCursor(String path) {
+        return testRestTemplate.exchange(path, HttpMethod.GET, null, new ParameterizedTypeReference<TestCursorPage<HoaxVM>>() {
+        });
+    }
+
     private <T> ResponseEntity<T> getNewHoaxes(long hoaxId, ParameterizedTypeReference<T> responseType) {
         String path = API_1_0_HOAXES + "/" + hoaxId + "?direction=after&sort=id,desc";
         return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
@@ -300,10 +349,10 @@ public class HoaxControllerTest {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
         authenticate(username);
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<TestPage<Object>> response = getHoaxes(new ParameterizedTypeReference<TestPage<Object>>() {
         });
         assertThat(response.getBody().getTotalElements()).isEqualTo(4);
@@ -314,7 +363,7 @@ public class HoaxControllerTest {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
         authenticate(username);
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<TestPage<HoaxVM>> response = getHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
         });
@@ -361,7 +410,7 @@ public class HoaxControllerTest {
     public void getHoaxesOfUser_whenUserExistsWithHoax_receivePageWithHoaxWM() {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<TestPage<HoaxVM>> response = getHoaxesOfUser(username, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
         });
@@ -373,10 +422,10 @@ public class HoaxControllerTest {
     public void getHoaxesOfUser_whenUserExistsWithMultipleHoaxes_receivePageWithMatchingHoaxesCount() {
         String username = "user1";
         User userWithFourHoaxes = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<TestPage<HoaxVM>> response = getHoaxesOfUser(username, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
         });
@@ -387,11 +436,11 @@ public class HoaxControllerTest {
     public void getHoaxesOfUser_whenMultipleUserExistsWithMultipleHoaxes_receivePageWithMatchingHoaxesCount() {
         User userWithThreeHoaxes = userService.save(TestUtil.createValidUser("user1"));
         IntStream.rangeClosed(1, 3).forEach(i -> {
-            hoaxService.save(userWithThreeHoaxes, TestUtil.createValidHoax());
+            hoaxService.save(userWithThreeHoaxes.getId(), TestUtil.createValidHoax());
         });
         User userWithFiveHoaxes = userService.save(TestUtil.createValidUser("user2"));
         IntStream.rangeClosed(1, 5).forEach(i -> {
-            hoaxService.save(userWithFiveHoaxes, TestUtil.createValidHoax());
+            hoaxService.save(userWithFiveHoaxes.getId(), TestUtil.createValidHoax());
         });
 
         ResponseEntity<TestPage<HoaxVM>> response = getHoaxesOfUser(userWithFiveHoaxes.getUsername(), new ParameterizedTypeReference<TestPage<HoaxVM>>() {
@@ -410,11 +459,11 @@ public class HoaxControllerTest {
     public void getOldHoaxes_WhenThereAreHoaxes_receivePageWithItemsBeforeProvidedId() {
         String username = "user1";
         User userWithFourHoaxes = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
         ResponseEntity<TestPage<Object>> response = getOldHoaxes(fourth.getId(), new ParameterizedTypeReference<TestPage<Object>>() {
         });
         assertThat(response.getBody().getTotalElements()).isEqualTo(3);
@@ -424,16 +473,136 @@ public class HoaxControllerTest {
     public void getOldHoaxes_WhenThereAreHoaxes_receivePageWithHoaxVMBeforeProvidedId() {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<TestPage<HoaxVM>> response = getOldHoaxes(fourth.getId(), new ParameterizedTypeReference<TestPage<HoaxVM>>() {
         });
         assertThat(response.getBody().getContent().get(0).getDate()).isGreaterThan(0);
     }
 
+    @Test
+    public void getHoaxes_whenCursorIsProvided_receiveCursorPageWithoutTotals() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        ResponseEntity<Map<String, Object>> response = testRestTemplate.exchange(API_1_0_HOAXES + "?cursor&size=2",
+                HttpMethod.GET, null, new ParameterizedTypeReference<Map<String, Object>>() {
+                });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).doesNotContainKeys("totalElements", "totalPages");
+        assertThat(response.getBody().get("next")).isInstanceOf(String.class);
+    }
+
+    @Test
+    public void getHoaxes_whenFollowingCursors_receiveAllHoaxesOnceInDescendingOrder() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        List<Long> savedIds = IntStream.rangeClosed(1, 7)
+                .mapToObj(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+        Collections.reverse(savedIds);
+        List<Long> receivedIds = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            TestCursorPage<HoaxVM> page = getHoaxesByCursor(API_1_0_HOAXES + "?size=3&cursor=" + cursor).getBody();
+            page.getContent().forEach(hoax -> receivedIds.add(hoax.getId()));
+            cursor = page.getNext();
+        }
+        assertThat(receivedIds).isEqualTo(savedIds);
+    }
+
+    @Test
+    public void getHoaxes_whenLastPageIsReached_receiveNullNextCursor() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        TestCursorPage<HoaxVM> page = getHoaxesByCursor(API_1_0_HOAXES + "?cursor&size=5").getBody();
+        assertThat(page.getContent().size()).isEqualTo(3);
+        assertThat(page.getNext()).isNull();
+        assertThat(page.isLast()).isTrue();
+    }
+
+    @Test
+    public void getHoaxes_whenCursorIsInvalid_receiveBadRequest() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_HOAXES + "?cursor=not-a-cursor", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenCursorIsProvided_receiveOnlyHoaxesOfUser() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        User otherUser = userService.save(TestUtil.createValidUser("user2"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        IntStream.rangeClosed(1, 2).forEach(i -> hoaxService.save(otherUser.getId(), TestUtil.createValidHoax()));
+        TestCursorPage<HoaxVM> page = getHoaxesByCursor("/api/1.0/users/user1/hoaxes?cursor").getBody();
+        assertThat(page.getContent()).extracting(hoax -> hoax.getUser().getUsername()).containsOnly("user1");
+        assertThat(page.getContent().size()).isEqualTo(3);
+    }
+
+    @Test
+    public void getOldHoaxes_whenCursorIsProvided_receiveCursorPageBeforeProvidedId() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        TestCursorPage<HoaxVM> page = getHoaxesByCursor(API_1_0_HOAXES + "/" + fourth.getId() + "?direction=before&size=2&cursor").getBody();
+        assertThat(page.getContent()).allMatch(hoax -> hoax.getId() < fourth.getId());
+        TestCursorPage<HoaxVM> nextPage = getHoaxesByCursor(API_1_0_HOAXES + "/" + fourth.getId() + "?direction=before&size=2&cursor=" + page.getNext()).getBody();
+        assertThat(nextPage.getContent().size()).isEqualTo(1);
+        assertThat(nextPage.getNext()).isNull();
+    }
+
+    private void saveHoaxesWithAttachments(int count) {
+        List<User> users = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> userService.save(TestUtil.createValidUser("user" + i)))
+                .collect(Collectors.toList());
+        IntStream.range(0, count).forEach(i -> {
+            Hoax hoax = hoaxService.save(users.get(i % users.size()).getId(), TestUtil.createValidHoax());
+            FileAttachment attachment = new FileAttachment();
+            attachment.setName("attachment-" + i);
+            attachment.setHoax(hoax);
+            fileAttachmentRepository.save(attachment);
+        });
+    }
+
+    private long statementsFor(Runnable request) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        request.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxesHaveUsersAndAttachments_executesPageAndCountQueriesOnly() {
+        saveHoaxesWithAttachments(6);
+        long statements = statementsFor(() -> testRestTemplate.getForEntity(API_1_0_HOAXES + "?page=0&size=5", Object.class));
+        assertThat(statements).isEqualTo(2);
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenHoaxesHaveAttachments_executesUserPageAndCountQueriesOnly() {
+        saveHoaxesWithAttachments(18);
+        long statements = statementsFor(() -> testRestTemplate.getForEntity("/api/1.0/users/user1/hoaxes?page=0&size=5", Object.class));
+        assertThat(statements).isEqualTo(3);
+    }
+
+    @Test
+    public void getOldHoaxes_whenHoaxesHaveUsersAndAttachments_executesPageAndCountQueriesOnly() {
+        saveHoaxesWithAttachments(6);
+        long newest = hoaxRepository.findLatestIds(PageRequest.of(0, 1)).get(0);
+        long statements = statementsFor(() -> testRestTemplate.getForEntity(API_1_0_HOAXES + "/" + newest + "?direction=before&page=0&size=5", Object.class));
+        assertThat(statements).isEqualTo(2);
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenCursorIsProvided_executesUserAndSliceQueriesOnly() {
+        saveHoaxesWithAttachments(6);
+        long statements = statementsFor(() -> testRestTemplate.getForEntity("/api/1.0/users/user1/hoaxes?cursor&size=5", Object.class));
+        assertThat(statements).isEqualTo(2);
+    }
+
     @Test
     public void getOldHoaxesOfUser_WhenUserExistAndThereAreNoHoaxes_receiveOk() {
         String username = "user1";
@@ -447,11 +616,11 @@ public class HoaxControllerTest {
     public void getOldHoaxesOfUser_WhenUserExistAndThereAreHoaxes_receivePageWithItemsBeforeProvidedId() {
         String username = "user1";
         User userWithFourHoaxes = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
         ResponseEntity<TestPage<Object>> response = getOldHoaxesOfUser(fourth.getId(), username, new ParameterizedTypeReference<TestPage<Object>>() {
         });
         assertThat(response.getBody().getTotalElements()).isEqualTo(3);
@@ -461,11 +630,11 @@ public class HoaxControllerTest {
     public void getOldHoaxesOfUser_WhenUserExistAndThereAreHoaxes_receivePageWithHoaxVMBeforeProvidedId() {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<TestPage<HoaxVM>> response = getOldHoaxesOfUser(fourth.getId(), username, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
         });
         assertThat(response.getBody().getContent().get(0).getDate()).isGreaterThan(0);
@@ -481,11 +650,11 @@ public class HoaxControllerTest {
     @Test
     public void getOldHoaxesOfUser_WhenUserExistAndThereAreNoHoaxes_receivePageWithZeroItemsBeforeProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         User user2 = userService.save(TestUtil.createValidUser("user2"));
 
@@ -497,11 +666,11 @@ public class HoaxControllerTest {
     @Test
     public void getNewHoaxes_whenThereAreHoaxes_receiveListOfItemsAfterProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<List<Object>> response = getNewHoaxes(fourth.getId(), new ParameterizedTypeReference<List<Object>>() {
         });
@@ -511,17 +680,87 @@ public class HoaxControllerTest {
     @Test
     public void getNewHoaxes_whenThereAreHoaxes_receiveListOfHoaxVMAfterProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<List<HoaxVM>> response = getNewHoaxes(fourth.getId(), new ParameterizedTypeReference<List<HoaxVM>>() {
         });
         assertThat(response.getBody().get(0).getDate()).isGreaterThan(0);
     }
 
+    @Test
+    public void getNewHoaxes_whenThereAreMoreHoaxesThanCatchUpLimit_receiveOldestHoaxesUpToLimit() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        List<Long> newerIds = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+        int catchUpLimit = appConfiguration.getFeed().getCatchUpLimit();
+        appConfiguration.getFeed().setCatchUpLimit(3);
+        try {
+            ResponseEntity<List<HoaxVM>> response = getNewHoaxes(first.getId(), new ParameterizedTypeReference<List<HoaxVM>>() {
+            });
+            assertThat(response.getBody()).extracting(HoaxVM::getId)
+                    .containsExactly(newerIds.get(2), newerIds.get(1), newerIds.get(0));
+        } finally {
+            appConfiguration.getFeed().setCatchUpLimit(catchUpLimit);
+        }
+    }
+
+    @Test
+    public void getNewHoaxes_whenCursorIsProvided_receiveAscendingCursorPageAfterProvidedId() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        List<Long> newerIds = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+        String path = API_1_0_HOAXES + "/" + first.getId() + "?direction=after&size=2&cursor";
+        TestCursorPage<HoaxVM> page = getHoaxesByCursor(path).getBody();
+        assertThat(page.getContent()).extracting(HoaxVM::getId).containsExactly(newerIds.get(0), newerIds.get(1));
+        TestCursorPage<HoaxVM> nextPage = getHoaxesByCursor(path + "=" + page.getNext()).getBody();
+        assertThat(nextPage.getContent()).extracting(HoaxVM::getId).containsExactly(newerIds.get(2));
+        assertThat(nextPage.getNext()).isNull();
+    }
+
+    @Test
+    public void getNewHoaxes_whenNdjsonFormatIsRequested_receiveOneHoaxPerLineInAscendingOrder() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        List<Long> newerIds = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+        ResponseEntity<String> response = testRestTemplate.getForEntity(
+                API_1_0_HOAXES + "/" + first.getId() + "?direction=after&format=ndjson", String.class);
+        assertThat(response.getHeaders().getContentType().toString()).startsWith("application/x-ndjson");
+        String[] lines = response.getBody().trim().split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"id\":" + newerIds.get(0));
+        assertThat(lines[2]).contains("\"id\":" + newerIds.get(2));
+    }
+
+    @Test
+    public void getNewHoaxesOfUser_whenNdjsonFormatIsRequestedAndUserDoesNotExist_receiveNotFound() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity(
+                "/api/1.0/users/unknown-user/hoaxes/5?direction=after&format=ndjson", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+    }
+
+    @Test
+    public void getNewHoaxes_whenAnyMediaTypeIsAccepted_receiveJsonList() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.ALL));
+        ResponseEntity<String> response = testRestTemplate.exchange(API_1_0_HOAXES + "/" + first.getId() + "?direction=after",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+    }
+
     @Test
     public void getNewHoaxesOfUser_WhenUserExistAndThereAreNoHoaxes_receiveOk() {
         String username = "user1";
@@ -535,11 +774,11 @@ public class HoaxControllerTest {
     public void getNewHoaxesOfUser_WhenUserExistAndThereAreHoaxes_receiveListWithItemsAfterProvidedId() {
         String username = "user1";
         User userWithFourHoaxes = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
-        hoaxService.save(userWithFourHoaxes, TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
+        hoaxService.save(userWithFourHoaxes.getId(), TestUtil.createValidHoax());
         ResponseEntity<List<Object>> response = getNewHoaxesOfUser(fourth.getId(), username, new ParameterizedTypeReference<List<Object>>() {
         });
         assertThat(response.getBody().size()).isEqualTo(1);
@@ -549,11 +788,11 @@ public class HoaxControllerTest {
     public void getNewHoaxesOfUser_WhenUserExistAndThereAreHoaxes_receivePageWithHoaxVMAfterProvidedId() {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user, TestUtil.createValidHoax());
-        hoaxService.save(user, TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<List<HoaxVM>> response = getNewHoaxesOfUser(fourth.getId(), username, new ParameterizedTypeReference<List<HoaxVM>>() {
         });
         assertThat(response.getBody().get(0).getDate()).isGreaterThan(0);
@@ -569,11 +808,11 @@ public class HoaxControllerTest {
     @Test
     public void getNewHoaxesOfUser_WhenUserExistAndThereAreNoHoaxes_receivePageWithZeroItemsAfterProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         User user2 = userService.save(TestUtil.createValidUser("user2"));
 
@@ -585,11 +824,11 @@ public class HoaxControllerTest {
     @Test
     public void getNewHoaxesCount_whenThereAreHoaxes_receiveCountAfterProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<Map<String, Long>> response = getNewHoaxesCount(fourth.getId(), new ParameterizedTypeReference<Map<String, Long>>() {
         });
@@ -599,11 +838,11 @@ public class HoaxControllerTest {
     @Test
     public void getNewHoaxesCountOfUser_whenThereAreHoaxes_receiveCountAfterProvidedId() {
         User user1 = userService.save(TestUtil.createValidUser("user1"));
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
-        Hoax fourth = hoaxService.save(user1, TestUtil.createValidHoax());
-        hoaxService.save(user1, TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        Hoax fourth = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user1.getId(), TestUtil.createValidHoax());
 
         ResponseEntity<Map<String, Long>> response = getNewHoaxesCountOfUser(fourth.getId(), user1.getUsername(), new ParameterizedTypeReference<Map<String, Long>>() {
         });
@@ -673,7 +912,7 @@ public class HoaxControllerTest {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
         authenticate(username);
-        Hoax hoax = hoaxService.save(user, TestUtil.createValidHoax());
+        Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<Object> response = deleteHoax(hoax.getId(), Object.class);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
@@ -683,7 +922,7 @@ public class HoaxControllerTest {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
         authenticate(username);
-        Hoax hoax = hoaxService.save(user, TestUtil.createValidHoax());
+        Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
         ResponseEntity<GenericResponse> response = deleteHoax(hoax.getId(), GenericResponse.class);
         assertThat(response.getBody().getMessage()).isNotNull();
     }
@@ -693,7 +932,7 @@ public class HoaxControllerTest {
         String username = "user1";
         User user = userService.save(TestUtil.createValidUser(username));
         authenticate(username);
-        Hoax hoax = hoaxService.save(user, TestUtil.createValidHoax());
+        Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
         deleteHoax(hoax.getId(), Object.class);
         Optional<Hoax> inDB = hoaxRepository.findById(hoax.getId());
         assertThat(inDB.isPresent()).isFalse();
@@ -705,7 +944,7 @@ public class HoaxControllerTest {
         userService.save(TestUtil.createValidUser(username));
         authenticate(username);
         User hoaxOwner = userService.save((TestUtil.createValidUser("hoax-owner")));
-        Hoax hoax = hoaxService.save(hoaxOwner, TestUtil.createValidHoax());
+        Hoax hoax = hoaxService.save(hoaxOwner.getId(), TestUtil.createValidHoax());
         ResponseEntity<Object> response = deleteHoax(hoax.getId(), Object.class);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
     }
@@ -758,9 +997,176 @@ public class HoaxControllerTest {
         long hoaxId = response.getBody().getId();
 
         deleteHoax(hoaxId, Object.class);
-        String attachmentPath = appConfiguration.getFullAttachmentsPath() +"/"+savedFile.getName();
-        File storedFile = new File(attachmentPath);
-        assertThat(storedFile.exists()).isFalse();
+        fileJobQueue.runDueJobs();
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), savedFile.getName())).isNull();
+    }
+
+    @Test
+    public void deleteHoax_whenAnotherHoaxHasSameAttachmentContent_fileIsKeptUntilLastHoaxIsDeleted() throws IOException {
+        String username = "user1";
+        userService.save(TestUtil.createValidUser(username));
+        authenticate(username);
+
+        FileAttachment firstFile = fileService.saveAttachment(createFile());
+        FileAttachment secondFile = fileService.saveAttachment(createFile());
+        Hoax first = TestUtil.createValidHoax();
+        first.setAttachment(firstFile);
+        Hoax second = TestUtil.createValidHoax();
+        second.setAttachment(secondFile);
+        long firstId = postHoax(first, HoaxVM.class).getBody().getId();
+        long secondId = postHoax(second, HoaxVM.class).getBody().getId();
+
+        assertThat(secondFile.getName()).isEqualTo(firstFile.getName());
+        deleteHoax(firstId, Object.class);
+        fileJobQueue.runDueJobs();
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), firstFile.getName())).isNotNull();
+
+        deleteHoax(secondId, Object.class);
+        fileJobQueue.runDueJobs();
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), firstFile.getName())).isNull();
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getAttachmentsFolder(), firstFile.getName())).isEmpty();
+    }
+
+    @Test
+    public void deleteHoax_whenCalledOutsideOfWebRequest_hoaxAndAttachmentRemovedFromDatabase() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        FileAttachment savedFile = fileService.saveAttachment(createFile());
+        Hoax hoax = TestUtil.createValidHoax();
+        hoax.setAttachment(savedFile);
+        Hoax saved = hoaxService.save(user.getId(), hoax);
+
+        hoaxService.deleteHoax(saved.getId());
+
+        assertThat(hoaxRepository.findById(saved.getId()).isPresent()).isFalse();
+        assertThat(fileAttachmentRepository.findById(savedFile.getId()).isPresent()).isFalse();
+    }
+
+    @Test
+    public void deleteHoax_whenUserOwnsHoax_deletesWithoutLoadingHoaxOrAttachment() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        long hoaxId = postHoax(TestUtil.createValidHoax(), HoaxVM.class).getBody().getId();
+
+        long statements = statementsFor(() -> deleteHoax(hoaxId, Object.class));
+
+        assertThat(hoaxRepository.findById(hoaxId).isPresent()).isFalse();
+        // account check of the cached login, owner check, attachment name, hoax delete and the timeline entry
+        assertThat(statements).isEqualTo(5);
+    }
+
+    @Test
+    public void postHoax_whenHoaxIsValidAndUserHasValidToken_hoaxSaveToDatabaseWithTokenUser() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticateWithToken(tokenService.issue(new AuthenticatedUser(user)));
+        ResponseEntity<Object> response = postHoax(TestUtil.createValidHoax(), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Hoax inDB = hoaxRepository.findAll().get(0);
+        assertThat(inDB.getUser().getId()).isEqualTo(user.getId());
     }
 
+    @Test
+    public void postHoax_whenHoaxIsValidAndUserHasInvalidToken_receiveUnauthorized() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        String token = tokenService.issue(new AuthenticatedUser(user));
+        authenticateWithToken(token.substring(0, token.length() - 2) + "xx");
+        ResponseEntity<Object> response = postHoax(TestUtil.createValidHoax(), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postHoaxes_whenUserIsUnauthorized_receiveUnauthorized() {
+        ResponseEntity<Object> response = testRestTemplate.postForEntity(API_1_0_HOAXES + "/batch",
+                Collections.singletonList(TestUtil.createValidHoax()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postHoaxes_whenAllHoaxesAreValid_allHoaxesSavedToDatabaseWithLoggedInUser() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        List<Hoax> hoaxes = IntStream.range(0, 3).mapToObj(i -> TestUtil.createValidHoax()).collect(Collectors.toList());
+        ResponseEntity<List<BatchItemResultVM>> response = postHoaxes(hoaxes);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).extracting(BatchItemResultVM::getIndex).containsExactly(0, 1, 2);
+        assertThat(response.getBody()).allMatch(result -> result.getId() != null && result.getValidationErrors() == null);
+        assertThat(hoaxRepository.findAll()).hasSize(3).allMatch(hoax -> hoax.getUser().getId() == user.getId());
+    }
+
+    @Test
+    public void postHoaxes_whenOneHoaxIsInvalid_receiveValidationErrorForThatItemAndSaveTheOthers() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        Hoax invalid = new Hoax();
+        invalid.setContent("short");
+        List<Hoax> hoaxes = Arrays.asList(TestUtil.createValidHoax(), invalid, TestUtil.createValidHoax());
+        List<BatchItemResultVM> results = postHoaxes(hoaxes).getBody();
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(1).getValidationErrors()).containsKey("content");
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(2).getId()).isNotNull();
+        assertThat(hoaxRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void postHoaxes_whenHoaxHasAvailableAttachment_attachmentIsLinkedToHoax() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        FileAttachment savedFile = fileService.saveAttachment(createFile());
+        Hoax hoax = TestUtil.createValidHoax();
+        hoax.setAttachment(savedFile);
+        List<BatchItemResultVM> results = postHoaxes(Collections.singletonList(hoax)).getBody();
+        FileAttachment inDB = fileAttachmentRepository.findById(savedFile.getId()).get();
+        assertThat(inDB.getHoax().getId()).isEqualTo(results.get(0).getId());
+    }
+
+    @Test
+    public void postHoaxes_whenTwoHoaxesReferenceSameAttachment_secondHoaxIsRejected() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        FileAttachment savedFile = fileService.saveAttachment(createFile());
+        Hoax first = TestUtil.createValidHoax();
+        first.setAttachment(savedFile);
+        Hoax second = TestUtil.createValidHoax();
+        second.setAttachment(savedFile);
+        List<BatchItemResultVM> results = postHoaxes(Arrays.asList(first, second)).getBody();
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getValidationErrors()).containsKey("attachment");
+    }
+
+    @Test
+    public void postHoaxes_whenRejectedHoaxReferencesAttachment_laterHoaxCanStillUseIt() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        FileAttachment savedFile = fileService.saveAttachment(createFile());
+        Hoax invalid = new Hoax();
+        invalid.setContent("short");
+        invalid.setAttachment(savedFile);
+        Hoax valid = TestUtil.createValidHoax();
+        valid.setAttachment(savedFile);
+        List<BatchItemResultVM> results = postHoaxes(Arrays.asList(invalid, valid)).getBody();
+        assertThat(results.get(0).getValidationErrors()).containsOnlyKeys("content");
+        FileAttachment inDB = fileAttachmentRepository.findById(savedFile.getId()).get();
+        assertThat(inDB.getHoax().getId()).isEqualTo(results.get(1).getId());
+    }
+
+    @Test
+    public void postHoaxes_whenBatchExceedsLimit_receiveBadRequest() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        int limit = appConfiguration.getFeed().getBatchLimit();
+        List<Hoax> hoaxes = IntStream.rangeClosed(0, limit).mapToObj(i -> TestUtil.createValidHoax()).collect(Collectors.toList());
+        ResponseEntity<Object> response = testRestTemplate.postForEntity(API_1_0_HOAXES + "/batch", hoaxes, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(hoaxRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void postHoaxes_whenBatchHasManyHoaxes_insertsAreSentInJdbcBatches() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        List<Hoax> hoaxes = IntStream.range(0, 120).mapToObj(i -> TestUtil.createValidHoax()).collect(Collectors.toList());
+        long statements = statementsFor(() -> postHoaxes(hoaxes));
+        assertThat(hoaxRepository.count()).isEqualTo(120);
+        assertThat(statements).isLessThan(30);
+    }
 }
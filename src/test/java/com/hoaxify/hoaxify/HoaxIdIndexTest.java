@@ -0,0 +1,122 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxIdIndex;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HoaxIdIndexTest {
+
+    @Autowired
+    HoaxIdIndex hoaxIdIndex;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+    }
+
+    private long countInDatabase(long id, String username) {
+        return hoaxRepository.findAll().stream()
+                .filter(hoax -> hoax.getId() > id)
+                .filter(hoax -> username == null || hoax.getUser().getUsername().equals(username))
+                .count();
+    }
+
+    @Test
+    public void countNewerThan_afterRandomSavesAndDeletes_matchesDatabaseCount() {
+        List<User> users = Arrays.asList(
+                userService.save(TestUtil.createValidUser("user1")),
+                userService.save(TestUtil.createValidUser("user2")),
+                userService.save(TestUtil.createValidUser("user3")));
+        Random random = new Random(42);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            User user = users.get(random.nextInt(users.size()));
+            ids.add(hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId());
+            if (i % 5 == 4) {
+                hoaxRepository.deleteById(ids.remove(random.nextInt(ids.size())));
+            }
+            if (i == 20) {
+                hoaxIdIndex.countNewerThan(0, null);
+                users.forEach(u -> hoaxIdIndex.countNewerThan(0, u.getUsername()));
+            }
+        }
+        for (long id : Arrays.asList(0L, ids.get(3), ids.get(ids.size() / 2), ids.get(ids.size() - 1))) {
+            assertThat(hoaxIdIndex.countNewerThan(id, null)).isEqualTo(countInDatabase(id, null));
+            for (User user : users) {
+                assertThat(hoaxIdIndex.countNewerThan(id, user.getUsername()))
+                        .isEqualTo(countInDatabase(id, user.getUsername()));
+            }
+        }
+    }
+
+    @Test
+    public void countNewerThan_whenIdIsOlderThanRetainedWindow_returnsMinusOne() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax third = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.getFeed().setIndexCapacity(3);
+        HoaxIdIndex smallIndex = new HoaxIdIndex(hoaxRepository, userService, appConfiguration, new SimpleMeterRegistry());
+
+        assertThat(smallIndex.countNewerThan(first.getId(), null)).isEqualTo(-1);
+        assertThat(smallIndex.countNewerThan(third.getId(), null)).isEqualTo(2);
+    }
+
+    @Test
+    public void getNewHoaxesCount_whenIdIsOlderThanRetainedWindow_fallsBackToDatabaseCount() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        assertThat(hoaxService.getNewHoaxesCount(first.getId() - 1, null)).isEqualTo(3);
+        assertThat(hoaxService.getNewHoaxesCount(first.getId(), "user1")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,193 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.HoaxStreamBroker;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HoaxStreamTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    HoaxStreamBroker hoaxStreamBroker;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+    }
+
+    private HttpURLConnection connect(String path, Long lastEventId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        // a stream the server ended must not leave a pooled keep-alive socket for the next test to pick up
+        connection.setRequestProperty("Connection", "close");
+        if (lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", String.valueOf(lastEventId));
+        }
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private BufferedReader open(HttpURLConnection connection) throws IOException {
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private List<Long> readEventIds(BufferedReader reader, int count) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        String line;
+        while (ids.size() < count && (line = reader.readLine()) != null) {
+            if (line.startsWith("id:")) {
+                ids.add(Long.parseLong(line.substring(3).trim()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Waits for the broker to end a stream on its own; reading the response to its end instead can fail with a
+     * premature EOF when the connection is closed right after the last chunk.
+     */
+    private void awaitSubscriberCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hoaxStreamBroker.getSubscriberCount() > count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void streamHoaxes_whenHoaxIsSaved_receiveEventWithHoaxId() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        HttpURLConnection connection = connect("/api/1.0/hoaxes/stream", null);
+        try (BufferedReader reader = open(connection)) {
+            assertThat(connection.getContentType()).startsWith("text/event-stream");
+            Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+            assertThat(readEventIds(reader, 1)).containsExactly(hoax.getId());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void streamHoaxesOfUser_whenHoaxesOfSeveralUsersAreSaved_receiveOnlyEventsOfThatUser() throws IOException {
+        User user1 = userService.save(TestUtil.createValidUser("user1"));
+        User user2 = userService.save(TestUtil.createValidUser("user2"));
+        HttpURLConnection connection = connect("/api/1.0/users/user1/hoaxes/stream", null);
+        try (BufferedReader reader = open(connection)) {
+            hoaxService.save(user2.getId(), TestUtil.createValidHoax());
+            Hoax hoaxOfUser1 = hoaxService.save(user1.getId(), TestUtil.createValidHoax());
+            assertThat(readEventIds(reader, 1)).containsExactly(hoaxOfUser1.getId());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void streamHoaxes_whenLastEventIdIsProvided_receiveMissedHoaxesFirst() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax first = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax second = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax third = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        HttpURLConnection connection = connect("/api/1.0/hoaxes/stream", first.getId());
+        try (BufferedReader reader = open(connection)) {
+            Hoax fourth = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+            assertThat(readEventIds(reader, 3)).containsExactly(second.getId(), third.getId(), fourth.getId());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void streamHoaxes_whenMoreHoaxesWereMissedThanBufferHolds_receiveBatchThenRestAfterReconnect() throws Exception {
+        int bufferSize = appConfiguration.getStream().getBufferSize();
+        appConfiguration.getStream().setBufferSize(2);
+        try {
+            User user = userService.save(TestUtil.createValidUser("user1"));
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                ids.add(hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId());
+            }
+            int subscribers = hoaxStreamBroker.getSubscriberCount();
+            HttpURLConnection connection = connect("/api/1.0/hoaxes/stream", ids.get(0));
+            try (BufferedReader reader = open(connection)) {
+                assertThat(readEventIds(reader, 2)).containsExactly(ids.get(1), ids.get(2));
+                awaitSubscriberCount(subscribers);
+                assertThat(hoaxStreamBroker.getSubscriberCount()).isLessThanOrEqualTo(subscribers);
+            } finally {
+                connection.disconnect();
+            }
+            connection = connect("/api/1.0/hoaxes/stream", ids.get(2));
+            try (BufferedReader reader = open(connection)) {
+                assertThat(readEventIds(reader, 2)).containsExactly(ids.get(3), ids.get(4));
+                Hoax live = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+                assertThat(readEventIds(reader, 1)).containsExactly(live.getId());
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            appConfiguration.getStream().setBufferSize(bufferSize);
+        }
+    }
+
+    @Test
+    public void streamHoaxesOfUser_whenUserDoesNotExist_receiveNotFound() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/1.0/users/unknown-user/hoaxes/stream").openConnection();
+        try {
+            assertThat(connection.getResponseCode()).isEqualTo(404);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.HoaxTimeline;
+import com.hoaxify.hoaxify.hoax.HoaxTimelineEntry;
+import com.hoaxify.hoaxify.hoax.HoaxTimelineRepository;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HoaxTimelineTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    HoaxTimeline hoaxTimeline;
+
+    @Autowired
+    HoaxTimelineRepository hoaxTimelineRepository;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        hoaxTimelineRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        hoaxTimelineRepository.deleteAll();
+    }
+
+    private TestPage<HoaxVM> getHoaxesOfUser(String username) {
+        return testRestTemplate.exchange("/api/1.0/users/" + username + "/hoaxes?sort=id,desc", HttpMethod.GET, null,
+                new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+                }).getBody();
+    }
+
+    @Test
+    public void saveHoax_whenHoaxIsValid_timelineEntryIsSavedForAuthor() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        HoaxTimelineEntry entry = hoaxTimelineRepository.findById(hoax.getId()).get();
+        assertThat(entry.getUserId()).isEqualTo(user.getId());
+        assertThat(entry.getContent()).isEqualTo(hoax.getContent());
+    }
+
+    @Test
+    public void deleteHoax_whenDeletedThroughService_timelineEntryIsRemoved() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax hoax = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxService.deleteHoax(hoax.getId());
+        assertThat(hoaxTimelineRepository.existsById(hoax.getId())).isFalse();
+    }
+
+    @Test
+    public void pruneDeleted_whenHoaxWasDeletedThroughRepository_timelineEntryIsRemoved() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax deleted = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax kept = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        hoaxRepository.deleteById(deleted.getId());
+
+        assertThat(hoaxTimeline.pruneDeleted()).isEqualTo(1);
+
+        assertThat(hoaxTimelineRepository.findAll()).extracting(HoaxTimelineEntry::getId).containsExactly(kept.getId());
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenUserHasHoaxes_receiveOnlyHoaxesOfThatUserFromTimeline() {
+        User user1 = userService.save(TestUtil.createValidUser("user1"));
+        User user2 = userService.save(TestUtil.createValidUser("user2"));
+        List<Long> ids = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> hoaxService.save(user1.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+        hoaxService.save(user2.getId(), TestUtil.createValidHoax());
+        TestPage<HoaxVM> page = getHoaxesOfUser("user1");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(HoaxVM::getId).containsExactly(ids.get(2), ids.get(1), ids.get(0));
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenUserDisplayNameIsUpdated_receiveUpdatedDisplayName() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        User inDB = userRepository.findByUsername("user1");
+        inDB.setDisplayName("new-display");
+        userRepository.save(inDB);
+        TestPage<HoaxVM> page = getHoaxesOfUser("user1");
+        assertThat(page.getContent().get(0).getUser().getDisplayName()).isEqualTo("new-display");
+    }
+
+    @Test
+    public void backfill_whenHoaxesHaveNoTimelineEntry_entriesAreCreated() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        hoaxTimelineRepository.deleteAll();
+        hoaxTimeline.backfill();
+        assertThat(hoaxTimelineRepository.count()).isEqualTo(5);
+        assertThat(getHoaxesOfUser("user1").getTotalElements()).isEqualTo(5);
+    }
+}
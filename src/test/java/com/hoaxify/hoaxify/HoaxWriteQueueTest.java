@@ -0,0 +1,245 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachment;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.error.ServiceUnavailableException;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.HoaxWriteQueue;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HoaxWriteQueueTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    HoaxWriteQueue hoaxWriteQueue;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    ExecutorService callers;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        callers = Executors.newFixedThreadPool(20);
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        callers.shutdownNow();
+        appConfiguration.getWrite().setGroupCommit(false);
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+    }
+
+    private List<Future<Hoax>> submitTogether(long userId, List<Hoax> hoaxes) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Hoax>> results = new ArrayList<>();
+        for (Hoax hoax : hoaxes) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return hoaxWriteQueue.submit(userId, hoax);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    @Test
+    public void postHoax_whenGroupCommitIsEnabled_hoaxIsSavedAndReturned() {
+        appConfiguration.getWrite().setGroupCommit(true);
+        userService.save(TestUtil.createValidUser("user1"));
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("user1", "P4ssword"));
+        ResponseEntity<HoaxVM> response = testRestTemplate.postForEntity("/api/1.0/hoaxes", TestUtil.createValidHoax(), HoaxVM.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(hoaxRepository.findById(response.getBody().getId())).isPresent();
+        assertThat(response.getBody().getUser().getUsername()).isEqualTo("user1");
+    }
+
+    @Test
+    public void submit_whenManyCallersSubmitConcurrently_hoaxesShareCommits() throws Exception {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        DistributionSummary batches = meterRegistry.get("hoaxify.hoax.write.batch").summary();
+        long batchesBefore = batches.count();
+        double hoaxesBefore = batches.totalAmount();
+        List<Hoax> hoaxes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            hoaxes.add(TestUtil.createValidHoax());
+        }
+        for (Future<Hoax> result : submitTogether(user.getId(), hoaxes)) {
+            assertThat(result.get(30, TimeUnit.SECONDS).getId()).isPositive();
+        }
+        assertThat(hoaxRepository.count()).isEqualTo(40);
+        assertThat(batches.totalAmount() - hoaxesBefore).isEqualTo(40);
+        assertThat(batches.count() - batchesBefore).isLessThan(40);
+    }
+
+    @Test
+    public void submit_whenOneHoaxOfBatchFails_otherHoaxesAreSaved() throws Exception {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax valid = TestUtil.createValidHoax();
+        Hoax invalid = TestUtil.createValidHoax();
+        FileAttachment missing = new FileAttachment();
+        missing.setId(12345);
+        invalid.setAttachment(missing);
+        List<Hoax> hoaxes = new ArrayList<>();
+        hoaxes.add(valid);
+        hoaxes.add(invalid);
+        List<Future<Hoax>> results = submitTogether(user.getId(), hoaxes);
+        Hoax saved = results.get(0).get(30, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> results.get(1).get(30, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(hoaxRepository.findAll()).extracting(Hoax::getId).containsExactly(saved.getId());
+    }
+
+    private HoaxWriteQueue queueOver(HoaxService hoaxService, AppConfiguration configuration) {
+        return new HoaxWriteQueue(hoaxService, Mockito.mock(PlatformTransactionManager.class), configuration,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void submit_whenSavingThrowsError_callerFailsAndLaterHoaxesAreStillSaved() {
+        HoaxService hoaxService = Mockito.mock(HoaxService.class);
+        Hoax saved = TestUtil.createValidHoax();
+        Mockito.when(hoaxService.save(Mockito.anyLong(), Mockito.any(Hoax.class)))
+                .thenThrow(new StackOverflowError())
+                .thenThrow(new StackOverflowError())
+                .thenReturn(saved);
+        HoaxWriteQueue queue = queueOver(hoaxService, new AppConfiguration());
+        try {
+            assertThatThrownBy(() -> queue.submit(1, TestUtil.createValidHoax()))
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            assertThat(queue.submit(1, TestUtil.createValidHoax())).isSameAs(saved);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_whenHoaxIsStillQueuedAtTimeout_receiveServiceUnavailableAndHoaxIsNeverSaved() throws Exception {
+        HoaxService hoaxService = Mockito.mock(HoaxService.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(hoaxService.save(Mockito.anyLong(), Mockito.any(Hoax.class))).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return invocation.getArgument(1);
+        });
+        AppConfiguration configuration = new AppConfiguration();
+        configuration.getWrite().setTimeout(Duration.ofMillis(100));
+        configuration.getWrite().setMaxDelay(Duration.ZERO);
+        HoaxWriteQueue queue = queueOver(hoaxService, configuration);
+        try {
+            Future<Hoax> first = callers.submit(() -> queue.submit(1, TestUtil.createValidHoax()));
+            writing.await();
+            assertThatThrownBy(() -> queue.submit(1, TestUtil.createValidHoax()))
+                    .isInstanceOf(ServiceUnavailableException.class);
+            release.countDown();
+            assertThat(first.get(30, TimeUnit.SECONDS)).isNotNull();
+            Thread.sleep(100);
+            Mockito.verify(hoaxService, Mockito.times(1)).save(Mockito.anyLong(), Mockito.any(Hoax.class));
+        } finally {
+            release.countDown();
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_whenBatchIsBeingWrittenAtTimeout_waitsForItsOutcome() throws Exception {
+        HoaxService hoaxService = Mockito.mock(HoaxService.class);
+        Mockito.when(hoaxService.save(Mockito.anyLong(), Mockito.any(Hoax.class))).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return invocation.getArgument(1);
+        });
+        AppConfiguration configuration = new AppConfiguration();
+        configuration.getWrite().setTimeout(Duration.ofMillis(100));
+        HoaxWriteQueue queue = queueOver(hoaxService, configuration);
+        try {
+            Hoax hoax = TestUtil.createValidHoax();
+            assertThat(queue.submit(1, hoax).getContent()).isEqualTo(hoax.getContent());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_whenBatchRollsBack_retriesWithFreshHoax() {
+        HoaxService hoaxService = Mockito.mock(HoaxService.class);
+        List<Hoax> attempts = new ArrayList<>();
+        Mockito.when(hoaxService.save(Mockito.anyLong(), Mockito.any(Hoax.class))).thenAnswer(invocation -> {
+            Hoax hoax = invocation.getArgument(1);
+            attempts.add(hoax);
+            if (attempts.size() == 1) {
+                hoax.setId(99);
+                throw new IllegalStateException("rolled back");
+            }
+            return hoax;
+        });
+        HoaxWriteQueue queue = queueOver(hoaxService, new AppConfiguration());
+        try {
+            Hoax hoax = TestUtil.createValidHoax();
+            Hoax saved = queue.submit(1, hoax);
+            assertThat(attempts).hasSize(2);
+            assertThat(saved).isNotSameAs(attempts.get(0)).isNotSameAs(hoax);
+            assertThat(saved.getId()).isZero();
+            assertThat(saved.getContent()).isEqualTo(hoax.getContent());
+        } finally {
+            queue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.user.FollowRepository;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HomeTimelineTest {
+
+    private static final String API_1_0_HOME = "/api/1.0/hoaxes/home";
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FollowRepository followRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private int fanOutLimit;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        followRepository.deleteAll();
+        userRepository.deleteAll();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        fanOutLimit = appConfiguration.getFeed().getFanOutLimit();
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        followRepository.deleteAll();
+        appConfiguration.getFeed().setFanOutLimit(fanOutLimit);
+    }
+
+    private void authenticate(String username) {
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor(username, "P4ssword"));
+    }
+
+    private TestCursorPage<HoaxVM> getHome(String query) {
+        return testRestTemplate.exchange(API_1_0_HOME + query, HttpMethod.GET, null,
+                new ParameterizedTypeReference<TestCursorPage<HoaxVM>>() {
+                }).getBody();
+    }
+
+    private List<Long> saveHoaxes(User user, int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()).getId())
+                .collect(Collectors.toList());
+    }
+
+    private double buffered() {
+        return meterRegistry.counter("hoaxify.feed.home", "result", "buffer").count();
+    }
+
+    @Test
+    public void getHome_whenUserIsUnauthorized_receiveUnauthorized() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_HOME, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void getHome_whenUserFollowsNobody_receiveEmptyPage() {
+        userService.save(TestUtil.createValidUser("user1"));
+        User other = userService.save(TestUtil.createValidUser("user2"));
+        saveHoaxes(other, 2);
+        authenticate("user1");
+        assertThat(getHome("").getContent()).isEmpty();
+    }
+
+    @Test
+    public void getHome_whenUserFollowsOthers_receiveHoaxesOfFollowedUsersNewestFirst() {
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User followed1 = userService.save(TestUtil.createValidUser("user2"));
+        User followed2 = userService.save(TestUtil.createValidUser("user3"));
+        User stranger = userService.save(TestUtil.createValidUser("user4"));
+        List<Long> expected = new ArrayList<>();
+        expected.addAll(saveHoaxes(followed1, 2));
+        saveHoaxes(stranger, 2);
+        expected.addAll(saveHoaxes(followed2, 2));
+        userService.follow(reader.getId(), "user2");
+        userService.follow(reader.getId(), "user3");
+        authenticate("user1");
+        TestCursorPage<HoaxVM> page = getHome("?size=10");
+        assertThat(page.getContent()).extracting(HoaxVM::getId)
+                .isEqualTo(expected.stream().sorted((a, b) -> Long.compare(b, a)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void getHome_whenFollowedUserPostsAfterBufferIsLoaded_receiveNewHoaxFromBuffer() {
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User followed = userService.save(TestUtil.createValidUser("user2"));
+        saveHoaxes(followed, 2);
+        userService.follow(reader.getId(), "user2");
+        authenticate("user1");
+        getHome("");
+        Hoax latest = hoaxService.save(followed.getId(), TestUtil.createValidHoax());
+        double bufferedBefore = buffered();
+        TestCursorPage<HoaxVM> page = getHome("");
+        assertThat(buffered()).isGreaterThan(bufferedBefore);
+        assertThat(page.getContent().get(0).getId()).isEqualTo(latest.getId());
+        assertThat(page.getContent()).hasSize(3);
+    }
+
+    @Test
+    public void getHome_whenPagedWithCursor_receiveEveryHoaxOnce() {
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User followed = userService.save(TestUtil.createValidUser("user2"));
+        List<Long> ids = saveHoaxes(followed, 7);
+        userService.follow(reader.getId(), "user2");
+        authenticate("user1");
+        List<Long> received = new ArrayList<>();
+        TestCursorPage<HoaxVM> page = getHome("?size=3");
+        received.addAll(page.getContent().stream().map(HoaxVM::getId).collect(Collectors.toList()));
+        while (page.getNext() != null) {
+            page = getHome("?size=3&cursor=" + page.getNext());
+            received.addAll(page.getContent().stream().map(HoaxVM::getId).collect(Collectors.toList()));
+        }
+        assertThat(received).isEqualTo(ids.stream().sorted((a, b) -> Long.compare(b, a)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void getHome_whenUserUnfollows_hoaxesOfUnfollowedUserAreNotReceived() {
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User followed = userService.save(TestUtil.createValidUser("user2"));
+        saveHoaxes(followed, 2);
+        userService.follow(reader.getId(), "user2");
+        authenticate("user1");
+        getHome("");
+        userService.unfollow(reader.getId(), "user2");
+        assertThat(getHome("").getContent()).isEmpty();
+    }
+
+    @Test
+    public void getHome_whenHoaxIsDeleted_hoaxIsNotReceived() {
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User followed = userService.save(TestUtil.createValidUser("user2"));
+        List<Long> ids = saveHoaxes(followed, 3);
+        userService.follow(reader.getId(), "user2");
+        authenticate("user1");
+        getHome("");
+        hoaxService.deleteHoax(ids.get(2));
+        assertThat(getHome("").getContent()).extracting(HoaxVM::getId).containsExactly(ids.get(1), ids.get(0));
+    }
+
+    @Test
+    public void getHome_whenAuthorHasMoreFollowersThanFanOutLimit_hoaxesArePulledAtReadTime() {
+        appConfiguration.getFeed().setFanOutLimit(1);
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User otherReader = userService.save(TestUtil.createValidUser("user2"));
+        User popular = userService.save(TestUtil.createValidUser("user3"));
+        saveHoaxes(popular, 1);
+        userService.follow(reader.getId(), "user3");
+        userService.follow(otherReader.getId(), "user3");
+        authenticate("user1");
+        getHome("");
+        Hoax latest = hoaxService.save(popular.getId(), TestUtil.createValidHoax());
+        TestCursorPage<HoaxVM> page = getHome("");
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getContent().get(0).getId()).isEqualTo(latest.getId());
+    }
+
+    @Test
+    public void getHome_whenAuthorCrossesFanOutLimitAfterBufferIsLoaded_receiveNewHoaxOfAuthor() {
+        appConfiguration.getFeed().setFanOutLimit(1);
+        User reader = userService.save(TestUtil.createValidUser("user1"));
+        User otherReader = userService.save(TestUtil.createValidUser("user2"));
+        User author = userService.save(TestUtil.createValidUser("user3"));
+        saveHoaxes(author, 1);
+        userService.follow(reader.getId(), "user3");
+        authenticate("user1");
+        getHome("");
+        userService.follow(otherReader.getId(), "user3");
+        Hoax latest = hoaxService.save(author.getId(), TestUtil.createValidHoax());
+        TestCursorPage<HoaxVM> page = getHome("");
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getContent().get(0).getId()).isEqualTo(latest.getId());
+    }
+}
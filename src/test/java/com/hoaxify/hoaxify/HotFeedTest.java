@@ -0,0 +1,185 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxCreatedEvent;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.HotFeed;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HotFeedTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    HotFeed hotFeed;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @AfterEach
+    public void cleanupAfter() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+    }
+
+    private double hits() {
+        return meterRegistry.counter("hoaxify.feed.hot", "result", "hit").count();
+    }
+
+    private TestPage<HoaxVM> getFirstPage() {
+        return testRestTemplate.exchange("/api/1.0/hoaxes?page=0&size=5&sort=id,desc", HttpMethod.GET, null,
+                new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+                }).getBody();
+    }
+
+    private List<Long> latestIdsInDatabase(int count) {
+        return hoaxRepository.findAll(PageRequest.of(0, count, Sort.by(Sort.Direction.DESC, "id")))
+                .map(Hoax::getId).getContent();
+    }
+
+    @Test
+    public void getHoaxes_whenFirstPageIsSortedByIdDesc_receivePageFromHotFeed() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 7).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        double hitsBefore = hits();
+        TestPage<HoaxVM> page = getFirstPage();
+        assertThat(hits()).isGreaterThan(hitsBefore);
+        assertThat(page.getTotalElements()).isEqualTo(7);
+        assertThat(page.getContent()).extracting(HoaxVM::getId).isEqualTo(latestIdsInDatabase(5));
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxesAreSavedConcurrently_hotFeedMatchesDatabase() throws InterruptedException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        IntStream.rangeClosed(1, 80).forEach(i -> executor.execute(() -> hoaxService.save(user.getId(), TestUtil.createValidHoax())));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        TestPage<HoaxVM> page = getFirstPage();
+        assertThat(page.getTotalElements()).isEqualTo(80);
+        assertThat(page.getContent()).extracting(HoaxVM::getId).isEqualTo(latestIdsInDatabase(5));
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxIsDeleted_hoaxIsRemovedFromHotFeed() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        Hoax latest = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        getFirstPage();
+        hoaxRepository.deleteById(latest.getId());
+        TestPage<HoaxVM> page = getFirstPage();
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        assertThat(page.getContent()).extracting(HoaxVM::getId).doesNotContain(latest.getId());
+    }
+
+    @Test
+    public void getHoaxes_whenUserDisplayNameIsUpdated_receiveUpdatedDisplayName() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        getFirstPage();
+        User inDB = userRepository.findByUsername("user1");
+        inDB.setDisplayName("new-display");
+        userRepository.save(inDB);
+        TestPage<HoaxVM> page = getFirstPage();
+        assertThat(page.getContent().get(0).getUser().getDisplayName()).isEqualTo("new-display");
+    }
+
+    @Test
+    public void getAllHoaxes_whenPageIsOutsideWindow_returnsNull() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 6).forEach(i -> hoaxService.save(user.getId(), TestUtil.createValidHoax()));
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.getFeed().setHotFeedSize(4);
+        HotFeed smallFeed = new HotFeed(hoaxRepository, appConfiguration, new SimpleMeterRegistry());
+        smallFeed.load();
+        Sort byIdDesc = Sort.by(Sort.Direction.DESC, "id");
+
+        Page<HoaxVM> firstPage = smallFeed.getAllHoaxes(PageRequest.of(0, 4, byIdDesc));
+        assertThat(firstPage.getContent()).extracting(HoaxVM::getId).isEqualTo(latestIdsInDatabase(4));
+        assertThat(smallFeed.getAllHoaxes(PageRequest.of(1, 4, byIdDesc))).isNull();
+        assertThat(smallFeed.getAllHoaxes(PageRequest.of(0, 4))).isNull();
+        List<Long> newest = latestIdsInDatabase(6);
+        assertThat(smallFeed.getHoaxesAfter(newest.get(3), 10).getContent()).extracting(HoaxVM::getId)
+                .isEqualTo(newest.subList(0, 3).stream().sorted().collect(Collectors.toList()));
+        assertThat(smallFeed.getHoaxesAfter(newest.get(5), 10)).isNull();
+    }
+
+    @Test
+    public void onHoaxCreated_whenEventCarriesSavedView_addsViewWithoutQueryingDatabase() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Hoax saved = hoaxService.save(user.getId(), TestUtil.createValidHoax());
+        HotFeed feed = new HotFeed(hoaxRepository, new AppConfiguration(), new SimpleMeterRegistry());
+        feed.load();
+        HoaxVM view = new HoaxVM(hoaxRepository.findAllByOrderByIdDesc(PageRequest.of(0, 1)).get(0));
+        view.setId(saved.getId() + 1);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        feed.onHoaxCreated(new HoaxCreatedEvent(view.getId(), user.getId(), view));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+        assertThat(feed.getHoaxesAfter(saved.getId(), 10).getContent()).containsExactly(view);
+    }
+}
@@ -0,0 +1,278 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileService;
+import com.hoaxify.hoaxify.hoax.Hoax;
+import com.hoaxify.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.hoaxify.shared.JobLease;
+import com.hoaxify.hoaxify.shared.JobLeaseRepository;
+import com.hoaxify.hoaxify.shared.JobLeases;
+import com.hoaxify.hoaxify.user.FollowRepository;
+import com.hoaxify.hoaxify.user.User;
+import com.hoaxify.hoaxify.user.UserRepository;
+import com.hoaxify.hoaxify.user.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs two application contexts, standing in for two nodes, against one H2 server.
+ */
+public class JobLeaseClusterTest {
+
+    private static final int ORPHANS = 20000;
+
+    private static final String TOKEN_SECRET = "cluster-test-secret-of-32-bytes!";
+
+    private static Object h2Server;
+
+    private static ConfigurableApplicationContext first;
+
+    private static ConfigurableApplicationContext second;
+
+    /**
+     * h2 is only a runtime dependency, so its server is started reflectively.
+     */
+    private static Object startH2Server() throws Exception {
+        Class<?> serverClass = Class.forName("org.h2.tools.Server");
+        Object server = serverClass.getMethod("createTcpServer", String[].class)
+                .invoke(null, (Object) new String[]{"-tcpPort", "0", "-ifNotExists"});
+        return serverClass.getMethod("start").invoke(server);
+    }
+
+    private static ConfigurableApplicationContext startNode(int nodeId, int h2Port, String ddlAuto) {
+        return new SpringApplicationBuilder(HoaxifyApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:tcp://localhost:" + h2Port + "/mem:cluster;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "hoaxify.clustered=true",
+                        "hoaxify.node-id=" + nodeId,
+                        "hoaxify.auth.token-secret=" + TOKEN_SECRET,
+                        "hoaxify.cleanup.chunk-size=500")
+                // the application's own settings take precedence over the defaults above
+                .run("--management.server.port=0");
+    }
+
+    @BeforeAll
+    public static void startNodes() throws Exception {
+        h2Server = startH2Server();
+        int h2Port = (int) h2Server.getClass().getMethod("getPort").invoke(h2Server);
+        first = startNode(1, h2Port, "create");
+        second = startNode(2, h2Port, "none");
+        awaitScheduledCleanup(first);
+        awaitScheduledCleanup(second);
+    }
+
+    /**
+     * Each node runs the cleanup once on startup; the tests start after that, so it cannot take their leases.
+     */
+    private static void awaitScheduledCleanup(ConfigurableApplicationContext node) throws InterruptedException {
+        Timer cleanups = node.getBean(MeterRegistry.class).get("hoaxify.storage.cleanup").timer();
+        long deadline = System.currentTimeMillis() + 30000;
+        while (cleanups.count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterAll
+    public static void stopNodes() throws Exception {
+        if (second != null) {
+            second.close();
+        }
+        if (first != null) {
+            first.close();
+        }
+        if (h2Server != null) {
+            h2Server.getClass().getMethod("stop").invoke(h2Server);
+        }
+    }
+
+    @BeforeEach
+    public void init() {
+        // a bulk delete, as deleteAll() merges each row first and would take the orphan with id 0 for a new one
+        first.getBean(FileAttachmentRepository.class).deleteAllInBatch();
+        first.getBean(JobLeaseRepository.class).deleteAll();
+        first.getBean(HoaxRepository.class).deleteAll();
+        first.getBean(FollowRepository.class).deleteAll();
+        first.getBean(UserRepository.class).deleteAll();
+    }
+
+    private static void insertOrphans() {
+        List<Object[]> rows = new ArrayList<>(ORPHANS);
+        Timestamp twoHoursAgo = new Timestamp(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+        for (int i = 0; i < ORPHANS; i++) {
+            // spread over many milliseconds of the id, which is what partitions are made of
+            rows.add(new Object[]{(long) i << 12, twoHoursAgo, "orphan-" + i, "text/plain"});
+        }
+        first.getBean(JdbcTemplate.class)
+                .batchUpdate("insert into file_attachment (id, date, name, file_type) values (?, ?, ?, ?)", rows);
+    }
+
+    @Test
+    public void cleanupStorage_whenNodesRunAtTheSameTime_eachPartitionIsCleanedByOneNode() {
+        insertOrphans();
+
+        CompletableFuture<Void> onFirst = CompletableFuture.runAsync(() -> first.getBean(FileService.class).cleanupStorage());
+        CompletableFuture<Void> onSecond = CompletableFuture.runAsync(() -> second.getBean(FileService.class).cleanupStorage());
+        CompletableFuture.allOf(onFirst, onSecond).join();
+
+        assertThat(first.getBean(FileAttachmentRepository.class).count()).isEqualTo(0);
+        List<JobLease> leases = second.getBean(JobLeaseRepository.class).findAll();
+        assertThat(leases).hasSize(5);
+        assertThat(leases).extracting(JobLease::getOwner)
+                .isSubsetOf(first.getBean(JobLeases.class).getOwner(), second.getBean(JobLeases.class).getOwner());
+    }
+
+    @Test
+    public void cleanupStorage_whenOtherNodeRanThisInterval_leavesOrphansForNextRound() {
+        first.getBean(FileService.class).cleanupStorage();
+        insertOrphans();
+
+        second.getBean(FileService.class).cleanupStorage();
+
+        assertThat(second.getBean(FileAttachmentRepository.class).count()).isEqualTo(ORPHANS);
+    }
+
+    @Test
+    public void cleanupStorage_whenHolderStoppedRenewing_otherNodeTakesOverAfterExpiry() {
+        JobLeases firstLeases = first.getBean(JobLeases.class);
+        for (int partition = 0; partition < 4; partition++) {
+            assertThat(firstLeases.acquire(FileService.CLEANUP_LEASE + partition, Duration.ofMillis(1))).isTrue();
+        }
+        insertOrphans();
+        JobLeaseRepository leases = first.getBean(JobLeaseRepository.class);
+
+        second.getBean(FileService.class).cleanupStorage();
+
+        assertThat(first.getBean(FileAttachmentRepository.class).count()).isEqualTo(0);
+        assertThat(leases.findAll()).extracting(JobLease::getOwner).containsOnly(second.getBean(JobLeases.class).getOwner());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getLeases_whenLeasesAreHeld_showsOwnerAndHostOfEachLease() throws UnknownHostException {
+        first.getBean(FileService.class).cleanupStorage();
+
+        String port = second.getEnvironment().getProperty("local.management.port");
+        List<Map<String, Object>> leases = Arrays.asList(new RestTemplate()
+                .getForObject("http://localhost:" + port + "/actuator/leases", Map[].class));
+
+        assertThat(leases).extracting(lease -> lease.get("name"))
+                .containsExactly("storage-cleanup-0", "storage-cleanup-1", "storage-cleanup-2", "storage-cleanup-3",
+                        "timeline-prune");
+        assertThat(leases).extracting(lease -> lease.get("owner")).containsOnly(first.getBean(JobLeases.class).getOwner());
+        assertThat(first.getBean(JobLeases.class).getOwner()).matches("node-1/[0-9a-f]{8}");
+        assertThat(leases).extracting(lease -> lease.get("host"))
+                .containsOnly(InetAddress.getLocalHost().getHostName());
+    }
+
+    @Test
+    public void getLeases_whenRequestedOnApplicationPort_receiveNotFound() {
+        String port = second.getEnvironment().getProperty("local.server.port");
+
+        assertThatThrownBy(() -> new RestTemplate().getForObject("http://localhost:" + port + "/actuator/leases", String.class))
+                .isInstanceOfSatisfying(HttpClientErrorException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    public void startNode_whenClusteredWithoutNodeId_failsToStart() throws Exception {
+        int h2Port = (int) h2Server.getClass().getMethod("getPort").invoke(h2Server);
+        SpringApplicationBuilder withoutNodeId = new SpringApplicationBuilder(HoaxifyApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:tcp://localhost:" + h2Port + "/mem:cluster;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "hoaxify.clustered=true",
+                        "hoaxify.auth.token-secret=" + TOKEN_SECRET);
+
+        assertThatThrownBy(() -> withoutNodeId.run("--management.server.port=0"))
+                .hasRootCauseInstanceOf(IllegalStateException.class)
+                .hasStackTraceContaining("hoaxify.node-id must be set");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getHoaxes_whenHoaxIsSavedOnOtherNode_pageAndCountIncludeIt() {
+        User user = first.getBean(UserService.class).save(TestUtil.createValidUser("user1"));
+        String url = "http://localhost:" + second.getEnvironment().getProperty("local.server.port") + "/api/1.0/hoaxes";
+        assertThat((List<?>) new RestTemplate().getForObject(url, Map.class).get("content")).isEmpty();
+        assertThat(second.getBean(HoaxService.class).getNewHoaxesCount(0, null)).isEqualTo(0);
+
+        Hoax hoax = first.getBean(HoaxService.class).save(user.getId(), TestUtil.createValidHoax());
+
+        List<Map<String, Object>> content = (List<Map<String, Object>>) new RestTemplate().getForObject(url, Map.class).get("content");
+        assertThat(content).extracting(view -> ((Number) view.get("id")).longValue()).containsExactly(hoax.getId());
+        assertThat(second.getBean(HoaxService.class).getNewHoaxesCount(0, null)).isEqualTo(1);
+        assertThat(second.getBean(HoaxService.class).getNewHoaxesCount(0, "user1")).isEqualTo(1);
+    }
+
+    @Test
+    public void getHomeTimeline_whenFollowAndHoaxAreSavedOnOtherNode_includesHoax() {
+        User follower = first.getBean(UserService.class).save(TestUtil.createValidUser("user1"));
+        User author = first.getBean(UserService.class).save(TestUtil.createValidUser("user2"));
+        HoaxService onSecond = second.getBean(HoaxService.class);
+        assertThat(onSecond.getHomeTimeline(follower.getId(), Long.MAX_VALUE, 10).getContent()).isEmpty();
+
+        first.getBean(UserService.class).follow(follower.getId(), "user2");
+        Hoax hoax = first.getBean(HoaxService.class).save(author.getId(), TestUtil.createValidHoax());
+
+        assertThat(onSecond.getHomeTimeline(follower.getId(), Long.MAX_VALUE, 10).getContent())
+                .extracting(HoaxVM::getId).containsExactly(hoax.getId());
+    }
+
+    @Test
+    public void streamHoaxes_whenHoaxIsSavedOnOtherNode_receiveEventWithinPollInterval() throws Exception {
+        User user = first.getBean(UserService.class).save(TestUtil.createValidUser("user1"));
+        URL url = new URL("http://localhost:" + second.getEnvironment().getProperty("local.server.port") + "/api/1.0/hoaxes/stream");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setRequestProperty("Connection", "close");
+        connection.setReadTimeout(10000);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            Hoax hoax = first.getBean(HoaxService.class).save(user.getId(), TestUtil.createValidHoax());
+            String line;
+            String eventId = null;
+            while (eventId == null && (line = reader.readLine()) != null) {
+                if (line.startsWith("id:")) {
+                    eventId = line.substring(3).trim();
+                }
+            }
+            assertThat(eventId).isEqualTo(String.valueOf(hoax.getId()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
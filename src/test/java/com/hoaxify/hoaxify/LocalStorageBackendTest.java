@@ -0,0 +1,196 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.file.LocalStorageBackend;
+import com.hoaxify.hoaxify.file.ShardedLayout;
+import com.hoaxify.hoaxify.file.StoredFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalStorageBackendTest {
+
+    @TempDir
+    Path root;
+
+    private Path write(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void shardOf_whenNameIsGiven_returnsTwoLevelsOfHexDirectories() {
+        assertThat(ShardedLayout.shardOf("some-name")).matches("[0-9a-f]{2}/[0-9a-f]{2}");
+        assertThat(ShardedLayout.shardOf("some-name")).isEqualTo(ShardedLayout.shardOf("some-name"));
+    }
+
+    @Test
+    public void shardOf_whenManyRandomNamesAreGiven_spreadsThemOverManyDirectories() {
+        Set<String> shards = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            shards.add(ShardedLayout.shardOf(UUID.randomUUID().toString().replaceAll("-", "")));
+        }
+        assertThat(shards.size()).isGreaterThan(9000);
+    }
+
+    @Test
+    public void store_whenFileIsStored_itIsFoundInItsShardWithContent() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        Path source = write(root.resolve("staging/abc"), "content");
+
+        backend.store("attachments", "abc", source);
+
+        StoredFile file = backend.find("attachments", "abc");
+        assertThat(file.getLocalPath()).isEqualTo(root.resolve("attachments/" + ShardedLayout.shardOf("abc") + "/abc"));
+        assertThat(file.getSize()).isEqualTo(7);
+        assertThat(read(backend.open(file, 2, 5))).isEqualTo("nte");
+        assertThat(source).doesNotExist();
+    }
+
+    @Test
+    public void store_whenStripesAreConfigured_filesAreSpreadOverStripes() throws IOException {
+        Path first = root.resolve("disk1");
+        Path second = root.resolve("disk2");
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Arrays.asList(first.toString(), second.toString()));
+        for (int i = 0; i < 50; i++) {
+            String name = "file" + i;
+            backend.store("attachments", name, write(root.resolve("staging/" + name), name));
+            Path stored = backend.find("attachments", name).getLocalPath();
+            assertThat(stored.startsWith(ShardedLayout.stripeOf(name, 2) == 0 ? first : second)).isTrue();
+        }
+        assertThat(first.resolve("attachments")).isDirectory();
+        assertThat(second.resolve("attachments")).isDirectory();
+    }
+
+    @Test
+    public void find_whenFileIsInFlatLayout_returnsIt() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        write(root.resolve("profile/old-image"), "old");
+
+        StoredFile file = backend.find("profile", "old-image");
+
+        assertThat(file.getLocalPath()).isEqualTo(root.resolve("profile/old-image"));
+        assertThat(backend.find("profile", "missing")).isNull();
+    }
+
+    @Test
+    public void delete_whenFileIsInEitherLayout_removesIt() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        write(root.resolve("profile/old-image"), "old");
+        backend.store("profile", "new-image", write(root.resolve("staging/new-image"), "new"));
+
+        backend.delete("profile", "old-image");
+        backend.delete("profile", "new-image");
+
+        assertThat(backend.find("profile", "old-image")).isNull();
+        assertThat(backend.find("profile", "new-image")).isNull();
+    }
+
+    @Test
+    public void migrateLegacy_whenFlatFilesExist_movesThemIntoShards() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        write(root.resolve("attachments/first"), "1");
+        write(root.resolve("attachments/second"), "2");
+        backend.store("attachments", "third", write(root.resolve("staging/third"), "3"));
+
+        assertThat(backend.migrateLegacy("attachments")).isEqualTo(2);
+
+        assertThat(root.resolve("attachments/first")).doesNotExist();
+        assertThat(backend.find("attachments", "first").getLocalPath()).isEqualTo(backend.shardedPath("attachments", "first"));
+        assertThat(read(backend.open(backend.find("attachments", "second"), 0, 1))).isEqualTo("2");
+        assertThat(backend.migrateLegacy("attachments")).isEqualTo(0);
+    }
+
+    @Test
+    public void migrateLegacy_whenOneFileCannotBeMoved_movesTheOthersAndNamesItInTheFailure() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        Path blocked = write(root.resolve("attachments/first"), "1");
+        write(root.resolve("attachments/second"), "2");
+        assertThat(ShardedLayout.shardOf("first")).isNotEqualTo(ShardedLayout.shardOf("second"));
+        write(backend.shardedPath("attachments", "first").getParent(), "not a directory");
+
+        assertThatThrownBy(() -> backend.migrateLegacy("attachments"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining(blocked.toString());
+
+        assertThat(blocked).exists();
+        assertThat(backend.find("attachments", "second").getLocalPath()).isEqualTo(backend.shardedPath("attachments", "second"));
+    }
+
+    @Test
+    public void find_whenStripesWereChanged_returnsFilesOfFormerStripes() throws IOException {
+        List<String> disks = Arrays.asList(root.resolve("disk1").toString(), root.resolve("disk2").toString());
+        LocalStorageBackend before = new LocalStorageBackend(root.toString(), disks);
+        for (int i = 0; i < 50; i++) {
+            before.store("attachments", "file" + i, write(root.resolve("staging/file" + i), "file" + i));
+        }
+        before.store("attachments", "unstriped", write(root.resolve("staging/unstriped"), "unstriped"));
+        Files.move(before.find("attachments", "unstriped").getLocalPath(),
+                Files.createDirectories(root.resolve("attachments/" + ShardedLayout.shardOf("unstriped"))).resolve("unstriped"));
+
+        List<String> more = new ArrayList<>(disks);
+        more.add(root.resolve("disk3").toString());
+        LocalStorageBackend after = new LocalStorageBackend(root.toString(), more);
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(read(after.open(after.find("attachments", "file" + i), 0, 10))).isEqualTo("file" + i);
+        }
+        assertThat(after.find("attachments", "unstriped")).isNotNull();
+        after.delete("attachments", "file0");
+        assertThat(after.find("attachments", "file0")).isNull();
+        assertThat(before.find("attachments", "file0")).isNull();
+    }
+
+    @Test
+    public void restripe_whenStripesWereChanged_movesFilesIntoTheirCurrentStripe() throws IOException {
+        List<String> disks = Arrays.asList(root.resolve("disk1").toString(), root.resolve("disk2").toString());
+        LocalStorageBackend before = new LocalStorageBackend(root.toString(), disks);
+        int misplaced = 0;
+        for (int i = 0; i < 50; i++) {
+            String name = "file" + i;
+            before.store("attachments", name, write(root.resolve("staging/" + name), name));
+            if (ShardedLayout.stripeOf(name, 2) != ShardedLayout.stripeOf(name, 3)) {
+                misplaced++;
+            }
+        }
+        List<String> more = new ArrayList<>(disks);
+        more.add(root.resolve("disk3").toString());
+        LocalStorageBackend after = new LocalStorageBackend(root.toString(), more);
+
+        assertThat(after.restripe("attachments")).isEqualTo(misplaced);
+
+        for (int i = 0; i < 50; i++) {
+            String name = "file" + i;
+            assertThat(after.find("attachments", name).getLocalPath()).isEqualTo(after.shardedPath("attachments", name));
+            assertThat(read(after.open(after.find("attachments", name), 0, 10))).isEqualTo(name);
+        }
+        assertThat(after.restripe("attachments")).isEqualTo(0);
+    }
+
+    @Test
+    public void store_whenNameLeavesTheFolder_throwsIllegalArgumentException() {
+        LocalStorageBackend backend = new LocalStorageBackend(root.toString(), Collections.emptyList());
+        assertThatThrownBy(() -> backend.find("attachments", "../secret")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
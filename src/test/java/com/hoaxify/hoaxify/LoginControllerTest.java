@@ -10,10 +10,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Map;
@@ -106,7 +109,7 @@ public class LoginControllerTest {
         });
 
         Map<String, Object> body = response.getBody();
-        Integer id = (Integer) body.get("id");
+        long id = ((Number) body.get("id")).longValue();
 
         assertThat(id).isEqualTo(inDB.getId());
     }
@@ -166,4 +169,122 @@ public class LoginControllerTest {
         assertThat(body.containsKey("password")).isFalse();
     }
 
+    @Test
+    public void postLogin_withIncorrectCredentialsAfterSuccessfulLogin_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser());
+        authenticate();
+        login(Object.class);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("test-user", "P4ssword2"));
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withValidCredentialsAfterUserIsRecreated_receiveNewUserId() {
+        userService.save(TestUtil.createValidUser());
+        authenticate();
+        login(Object.class);
+        userRepository.deleteAll();
+        User inDB = userService.save(TestUtil.createValidUser());
+        ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        assertThat(((Number) response.getBody().get("id")).longValue()).isEqualTo(inDB.getId());
+    }
+
+    @Test
+    public void postLogin_withValidCredentials_receiveAccessToken() {
+        userService.save(TestUtil.createValidUser());
+        authenticate();
+        ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        assertThat((String) response.getBody().get("token")).isNotEmpty();
+    }
+
+    @Test
+    public void postLogin_withValidCredentialsForPasswordHashedWithLowerStrength_passwordIsRehashed() {
+        User user = TestUtil.createValidUser();
+        user.setPassword(new BCryptPasswordEncoder(4).encode("P4ssword"));
+        userRepository.save(user);
+        authenticate();
+        login(Object.class);
+        User inDB = userRepository.findByUsername("test-user");
+        assertThat(inDB.getPassword()).startsWith("$2a$10$");
+    }
+
+    @Test
+    public void postLogin_withValidCredentialsAfterPasswordIsRehashed_receiveOk() {
+        User user = TestUtil.createValidUser();
+        user.setPassword(new BCryptPasswordEncoder(4).encode("P4ssword"));
+        userRepository.save(user);
+        authenticate();
+        login(Object.class);
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private String loginForToken() {
+        authenticate();
+        ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        return (String) response.getBody().get("token");
+    }
+
+    private ResponseEntity<Object> getHomeWithToken(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return testRestTemplate.exchange("/api/1.0/hoaxes/home", HttpMethod.GET, new HttpEntity<>(headers), Object.class);
+    }
+
+    @Test
+    public void postLogin_withOnlyAccessToken_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser());
+        String token = loginForToken();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        ResponseEntity<Object> response = testRestTemplate.exchange(API_1_0_LOGIN, HttpMethod.POST, new HttpEntity<>(headers), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void getHome_withTokenIssuedBeforePasswordChange_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser());
+        String token = loginForToken();
+        assertThat(getHomeWithToken(token).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        User inDB = userRepository.findByUsername("test-user");
+        inDB.changePassword(new BCryptPasswordEncoder(4).encode("N3wPassword"));
+        userRepository.save(inDB);
+
+        assertThat(getHomeWithToken(token).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void getHome_withTokenIssuedByLoginThatRehashedPassword_receiveOk() {
+        User user = TestUtil.createValidUser();
+        user.setPassword(new BCryptPasswordEncoder(4).encode("P4ssword"));
+        userRepository.save(user);
+        String token = loginForToken();
+
+        assertThat(userRepository.findByUsername("test-user").getCredentialVersion()).isEqualTo(0);
+        assertThat(getHomeWithToken(token).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void getHome_withTokenIssuedBeforePasswordIsRehashedAtHigherCost_receiveOk() {
+        userService.save(TestUtil.createValidUser());
+        String first = loginForToken();
+        loginForToken();
+        // as if the configured cost had been raised since the password was hashed
+        User inDB = userRepository.findByUsername("test-user");
+        String lowerCost = new BCryptPasswordEncoder(4).encode("P4ssword");
+        inDB.setPassword(lowerCost);
+        userRepository.save(inDB);
+
+        loginForToken();
+
+        assertThat(userRepository.findByUsername("test-user").getPassword()).isNotEqualTo(lowerCost);
+        assertThat(getHomeWithToken(first).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
 }
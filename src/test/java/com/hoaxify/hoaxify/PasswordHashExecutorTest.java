@@ -0,0 +1,84 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.AuthenticationOverloadedException;
+import com.hoaxify.hoaxify.configuration.PasswordHashExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PasswordHashExecutorTest {
+
+    MeterRegistry meterRegistry;
+
+    PasswordHashExecutor passwordHashExecutor;
+
+    ExecutorService callers;
+
+    @BeforeEach
+    public void init() {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.getAuth().setHashThreads(1);
+        appConfiguration.getAuth().setHashQueueCapacity(1);
+        meterRegistry = new SimpleMeterRegistry();
+        passwordHashExecutor = new PasswordHashExecutor(appConfiguration, meterRegistry);
+        callers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        callers.shutdownNow();
+        passwordHashExecutor.shutdown();
+    }
+
+    @Test
+    public void execute_whenTaskCompletes_returnsResultAndRecordsLatency() {
+        String result = passwordHashExecutor.execute(() -> "verified");
+        assertThat(result).isEqualTo("verified");
+        assertThat(meterRegistry.timer("hoaxify.auth.hash").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_whenTaskThrowsAuthenticationException_rethrowsIt() {
+        assertThatThrownBy(() -> passwordHashExecutor.execute(() -> {
+            throw new BadCredentialsException("bad");
+        })).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    public void execute_whenWorkersAndQueueAreFull_throwsAuthenticationOverloadedException() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        callers.submit(() -> passwordHashExecutor.execute(() -> await(release)));
+        callers.submit(() -> passwordHashExecutor.execute(() -> await(release)));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (passwordHashExecutor.getQueueSize() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        try {
+            assertThatThrownBy(() -> passwordHashExecutor.execute(() -> "rejected"))
+                    .isInstanceOf(AuthenticationOverloadedException.class);
+            assertThat(meterRegistry.counter("hoaxify.auth.hash.rejected").count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.hoaxify.hoaxify;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachment;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.FileService;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -8,16 +12,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -31,9 +51,25 @@ public class StaticResourceTest {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    FileService fileService;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    FileContentRepository fileContentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
 
     @AfterEach
     public void cleanup() throws IOException {
+        fileAttachmentRepository.deleteAll();
+        fileContentRepository.deleteAll();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
@@ -105,4 +141,153 @@ public class StaticResourceTest {
         String cacheControl = result.getResponse().getHeaderValue("Cache-Control").toString();
         assertThat(cacheControl).containsIgnoringCase("max-age=31536000");
     }
+
+    private String copyProfileImageToAttachments() throws IOException {
+        String fileName = "profile-picture.png";
+        FileUtils.copyFile(new ClassPathResource("profile.png").getFile(), new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName));
+        return "/images/" + appConfiguration.getAttachmentsFolder() + "/" + fileName;
+    }
+
+    @Test
+    public void getStaticFile_whenImageExists_receiveImageWithStrongEtagAndContentType() throws Exception {
+        String url = copyProfileImageToAttachments();
+        MvcResult result = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+
+        assertThat(result.getResponse().getHeader("ETag")).startsWith("\"");
+        assertThat(result.getResponse().getContentType()).isEqualTo("image/png");
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile()));
+    }
+
+    @Test
+    public void getStaticFile_whenIfNoneMatchHasCurrentEtag_receiveNotModified() throws Exception {
+        String url = copyProfileImageToAttachments();
+        String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    @Test
+    public void getStaticFile_whenIfModifiedSinceIsNotBeforeLastModified_receiveNotModified() throws Exception {
+        String url = copyProfileImageToAttachments();
+        long lastModified = mockMvc.perform(get(url)).andReturn().getResponse().getDateHeader("Last-Modified");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfModifiedSince(lastModified);
+        mockMvc.perform(get(url).headers(headers))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getStaticFile_whenRangeRequested_receivePartialContent() throws Exception {
+        String url = copyProfileImageToAttachments();
+        byte[] image = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+
+        mockMvc.perform(get(url).header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/" + image.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 10, 20)));
+    }
+
+    @Test
+    public void getStaticFile_whenRangeIsBeyondFile_receiveRangeNotSatisfiable() throws Exception {
+        String url = copyProfileImageToAttachments();
+
+        mockMvc.perform(get(url).header("Range", "bytes=100000000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    public void getStaticFile_whenIfRangeDoesNotMatch_receiveWholeFile() throws Exception {
+        String url = copyProfileImageToAttachments();
+
+        mockMvc.perform(get(url).header("Range", "bytes=10-19").header("If-Range", "\"stale\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void getStaticFile_whenPrecompressedVariantExistsAndGzipAccepted_receiveGzipVariant() throws Exception {
+        String fileName = "notes";
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+        FileUtils.writeStringToFile(target, "some notes", "UTF-8");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(new File(target.getPath() + ".gz").toPath()))) {
+            out.write("some notes".getBytes("UTF-8"));
+        }
+        String url = "/images/" + appConfiguration.getAttachmentsFolder() + "/" + fileName;
+
+        mockMvc.perform(get(url).header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"));
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("some notes"));
+    }
+
+    private String uploadAttachment(String originalName, byte[] bytes) {
+        FileAttachment attachment = fileService.saveAttachment(new MockMultipartFile("file", originalName, null, bytes));
+        return attachment.getName();
+    }
+
+    @Test
+    public void getStaticFile_whenAttachmentWasUploaded_receiveEtagOfContentHashAndStoredType() throws Exception {
+        String name = uploadAttachment("profile.png", FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile()));
+
+        mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/" + name))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + name + "\""))
+                .andExpect(header().string("Content-Type", "image/png"));
+    }
+
+    @Test
+    public void getStaticFile_whenAttachmentHasStoredType_receiveStoredTypeWithoutSniffing() throws Exception {
+        String name = uploadAttachment("profile.png", FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile()));
+        jdbcTemplate.update("update file_content set content_type = ? where name = ?", "image/gif", name);
+
+        mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/" + name))
+                .andExpect(header().string("Content-Type", "image/gif"));
+    }
+
+    @Test
+    public void getStaticFile_whenUploadedTextHasGzipCopyAndGzipAccepted_receiveGzipVariantWithContentHashEtag() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        String name = uploadAttachment("notes.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+        assertThat(fileContentRepository.findDescription(appConfiguration.getAttachmentsFolder(), name))
+                .hasValueSatisfying(content -> assertThat(content.isCompressed()).isTrue());
+
+        mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/" + name).header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"" + name + "-gz\""))
+                .andExpect(header().string("Content-Type", "application/octet-stream"));
+    }
+
+    @Test
+    public void getStaticFile_whenFolderIsNotAnUploadFolder_receiveNotFound() throws Exception {
+        copyProfileImageToAttachments();
+        mockMvc.perform(get("/images/other/profile-picture.png")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getStaticFile_whenFileIsLarge_receiveSameContentAndRanges() throws IOException {
+        byte[] large = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(large);
+        FileUtils.writeByteArrayToFile(new File(appConfiguration.getFullAttachmentsPath() + "/large"), large);
+        String url = "/images/" + appConfiguration.getAttachmentsFolder() + "/large";
+
+        ResponseEntity<byte[]> whole = testRestTemplate.getForEntity(url, byte[].class);
+        assertThat(whole.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(whole.getBody()).isEqualTo(large);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Range", "bytes=1000000-2999999");
+        ResponseEntity<byte[]> part = testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(part.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(part.getBody()).isEqualTo(Arrays.copyOfRange(large, 1000000, 3000000));
+    }
 }
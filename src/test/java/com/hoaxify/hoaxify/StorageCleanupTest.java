@@ -0,0 +1,198 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.file.FileAttachment;
+import com.hoaxify.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.FileService;
+import com.hoaxify.hoaxify.file.StorageBackend;
+import com.hoaxify.hoaxify.shared.JobLease;
+import com.hoaxify.hoaxify.shared.JobLeaseRepository;
+import com.hoaxify.hoaxify.shared.JobLeases;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class StorageCleanupTest {
+
+    private static final int ORPHANS = 100000;
+
+    private static final int CONTENTS = 100;
+
+    @Autowired
+    FileService fileService;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    FileContentRepository fileContentRepository;
+
+    @Autowired
+    StorageBackend storageBackend;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    JobLeases jobLeases;
+
+    @BeforeEach
+    public void init() throws IOException {
+        fileAttachmentRepository.deleteAll();
+        fileContentRepository.deleteAll();
+        jobLeaseRepository.deleteAll();
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        fileAttachmentRepository.deleteAll();
+        fileContentRepository.deleteAll();
+        jobLeaseRepository.deleteAll();
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+    }
+
+    private static String contentName(int content) {
+        return String.format("%064x", content);
+    }
+
+    private void storeContent(int content, int refCount) throws IOException {
+        String name = contentName(content);
+        Path staged = Paths.get(appConfiguration.getUploadPath(), "staging", name);
+        Files.createDirectories(staged.getParent());
+        Files.write(staged, name.getBytes(StandardCharsets.UTF_8));
+        storageBackend.store(appConfiguration.getAttachmentsFolder(), name, staged);
+        jdbcTemplate.update("insert into file_content (id, folder, name, size, ref_count, created_at) values (?, ?, ?, ?, ?, ?)",
+                content + 1, appConfiguration.getAttachmentsFolder(), name, name.length(), refCount, new Timestamp(0));
+    }
+
+    /**
+     * Orphans are written with plain JDBC batches, as saving 100k entities would take most of the test's time. Several
+     * orphans share each date, so chunks have to break ties on the id.
+     */
+    private void insertOrphans(int count, long firstId, Date newest) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{firstId + i, new Timestamp(newest.getTime() - (count - i) / 7 * 1000L),
+                    contentName(i % CONTENTS), "text/plain"});
+        }
+        jdbcTemplate.batchUpdate("insert into file_attachment (id, date, name, file_type) values (?, ?, ?, ?)", rows);
+    }
+
+    private DistributionSummary reclaimed() {
+        return meterRegistry.get("hoaxify.storage.cleanup.reclaimed").summary();
+    }
+
+    @Test
+    public void cleanupStorage_whenThereAreManyOrphans_removesThemAllAndDeletesUnreferencedFiles() throws IOException {
+        for (int content = 0; content < CONTENTS; content++) {
+            storeContent(content, ORPHANS / CONTENTS + (content == 0 ? 1 : 0));
+        }
+        Date twoHoursAgo = new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+        insertOrphans(ORPHANS, 1, twoHoursAgo);
+        FileAttachment recent = new FileAttachment();
+        recent.setDate(new Date());
+        recent.setName(contentName(0));
+        recent = fileAttachmentRepository.save(recent);
+        double reclaimedBefore = reclaimed().totalAmount();
+
+        fileService.cleanupStorage();
+
+        assertThat(fileAttachmentRepository.findAll()).extracting(FileAttachment::getId).containsExactly(recent.getId());
+        assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), contentName(0))).isNotNull();
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getAttachmentsFolder(), contentName(0))).contains(1);
+        for (int content = 1; content < CONTENTS; content++) {
+            assertThat(storageBackend.find(appConfiguration.getAttachmentsFolder(), contentName(content))).isNull();
+        }
+        assertThat(fileContentRepository.count()).isEqualTo(1);
+        assertThat(reclaimed().totalAmount() - reclaimedBefore).isEqualTo(CONTENTS - 1);
+    }
+
+    @Test
+    public void cleanupStorage_whenOrphanIsLegacyFile_deletesFileWithoutReferenceCount() throws IOException {
+        Path legacy = Paths.get(appConfiguration.getFullAttachmentsPath(), "legacy-name");
+        Files.write(legacy, new byte[]{1, 2, 3});
+        jdbcTemplate.update("insert into file_attachment (id, date, name, file_type) values (?, ?, ?, ?)",
+                1, new Timestamp(System.currentTimeMillis() - 2 * 60 * 60 * 1000), "legacy-name", "text/plain");
+
+        fileService.cleanupStorage();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+        assertThat(legacy).doesNotExist();
+    }
+
+    private void leaseAllPartitions(String owner, Date lockedUntil) {
+        for (int partition = 0; partition < appConfiguration.getCleanup().getPartitions(); partition++) {
+            JobLease lease = new JobLease();
+            lease.setName(FileService.CLEANUP_LEASE + partition);
+            lease.setOwner(owner);
+            lease.setLockedUntil(lockedUntil);
+            jobLeaseRepository.save(lease);
+        }
+    }
+
+    @Test
+    public void cleanupStorage_whenLeasesAreHeldByAnotherNode_leavesOrphans() {
+        leaseAllPartitions("other-node", new Date(System.currentTimeMillis() + 60 * 1000));
+        insertOrphans(100, 1, new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+
+        fileService.cleanupStorage();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(100);
+    }
+
+    @Test
+    public void cleanupStorage_whenLeasesOfCrashedNodeHaveExpired_takesThemOver() {
+        leaseAllPartitions("crashed-node", new Date(System.currentTimeMillis() - 1000));
+        insertOrphans(100, 1, new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+
+        fileService.cleanupStorage();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+        assertThat(jobLeaseRepository.findAll()).extracting(JobLease::getOwner).containsOnly(jobLeases.getOwner());
+    }
+
+    @Test
+    public void cleanupStorage_whenRunAgainWithinInterval_leavesNewOrphansForNextRound() {
+        fileService.cleanupStorage();
+        insertOrphans(100, 1, new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+
+        fileService.cleanupStorage();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(100);
+        assertThat(jobLeaseRepository.findAll()).allSatisfy(lease ->
+                assertThat(lease.getLockedUntil()).isAfter(new Date(System.currentTimeMillis() + 30 * 60 * 1000)));
+    }
+}
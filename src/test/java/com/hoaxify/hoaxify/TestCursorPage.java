@@ -0,0 +1,15 @@
+package com.hoaxify.hoaxify;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TestCursorPage<T> {
+    int numberOfElements;
+    int size;
+    boolean last;
+    String next;
+
+    List<T> content;
+}
@@ -0,0 +1,172 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.shared.TimeOrderedIdGenerator;
+import com.hoaxify.hoaxify.shared.TimeOrderedIdentifierGenerator;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.jdbc.connections.spi.JdbcConnectionAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TimeOrderedIdGeneratorTest {
+
+    private static final long NOW = TimeOrderedIdGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    public void nextId_whenClockAdvances_idsIncreaseAndCarryTheTimestamp() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, clock::get);
+        long first = generator.nextId();
+        clock.addAndGet(5);
+        long second = generator.nextId();
+        assertThat(second).isGreaterThan(first);
+        assertThat(TimeOrderedIdGenerator.timestampOf(first)).isEqualTo(NOW);
+        assertThat(TimeOrderedIdGenerator.timestampOf(second)).isEqualTo(NOW + 5);
+    }
+
+    @Test
+    public void nextId_whenNodeIdIsSet_idCarriesTheNodeId() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(7, () -> NOW);
+        assertThat(TimeOrderedIdGenerator.nodeIdOf(generator.nextId())).isEqualTo(7);
+    }
+
+    @Test
+    public void nextId_whenClockMovesBackwards_idsKeepIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, clock::get);
+        long beforeSkew = generator.nextId();
+        clock.addAndGet(-10_000);
+        long afterSkew = generator.nextId();
+        assertThat(afterSkew).isGreaterThan(beforeSkew);
+        assertThat(TimeOrderedIdGenerator.timestampOf(afterSkew)).isEqualTo(NOW);
+    }
+
+    @Test
+    public void nextId_whenSequenceOverflowsWithinOneMillisecond_borrowsTheNextMillisecond() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, () -> NOW);
+        long last = 0;
+        for (int i = 0; i <= 1 << TimeOrderedIdGenerator.SEQUENCE_BITS; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(last);
+            last = id;
+        }
+        assertThat(TimeOrderedIdGenerator.timestampOf(last)).isEqualTo(NOW + 1);
+    }
+
+    @Test
+    public void nextId_whenSeededWithIdFromAheadOfTheClock_idsAreGreaterThanTheSeed() {
+        TimeOrderedIdGenerator previousRun = new TimeOrderedIdGenerator(3, () -> NOW + 60_000);
+        long persisted = previousRun.nextId();
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, () -> NOW);
+        generator.seed(persisted);
+        long first = generator.nextId();
+        assertThat(first).isGreaterThan(persisted);
+        assertThat(generator.nextId()).isGreaterThan(first);
+        assertThat(TimeOrderedIdGenerator.timestampOf(first)).isEqualTo(NOW + 60_001);
+    }
+
+    @Test
+    public void nextId_whenSeededWithOlderId_followsTheClock() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, () -> NOW);
+        generator.seed(TimeOrderedIdGenerator.firstIdAt(NOW - 60_000));
+        assertThat(TimeOrderedIdGenerator.timestampOf(generator.nextId())).isEqualTo(NOW);
+    }
+
+    @Test
+    public void generate_whenTableHoldsIdFromAheadOfTheClock_generatesGreaterIds() throws Exception {
+        long persisted = TimeOrderedIdGenerator.firstIdAt(System.currentTimeMillis() + 3_600_000L);
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:seed;DB_CLOSE_DELAY=-1")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table seeded (id bigint primary key)");
+                statement.execute("insert into seeded values (" + persisted + ")");
+            }
+            JdbcConnectionAccess connectionAccess = mock(JdbcConnectionAccess.class);
+            when(connectionAccess.obtainConnection())
+                    .thenAnswer(invocation -> DriverManager.getConnection("jdbc:h2:mem:seed"));
+            SharedSessionContractImplementor session = mock(SharedSessionContractImplementor.class);
+            when(session.getJdbcConnectionAccess()).thenReturn(connectionAccess);
+            ConfigurationService configurationService = mock(ConfigurationService.class);
+            when(configurationService.getSetting(TimeOrderedIdentifierGenerator.NODE_ID_SETTING, StandardConverters.STRING, "0"))
+                    .thenReturn("0");
+            ServiceRegistry serviceRegistry = mock(ServiceRegistry.class);
+            when(serviceRegistry.getService(ConfigurationService.class)).thenReturn(configurationService);
+            Properties params = new Properties();
+            params.setProperty(PersistentIdentifierGenerator.TABLE, "seeded");
+            params.setProperty(PersistentIdentifierGenerator.PK, "id");
+
+            TimeOrderedIdentifierGenerator generator = new TimeOrderedIdentifierGenerator();
+            generator.configure(null, params, serviceRegistry);
+            assertThat((Long) generator.generate(session, new Object())).isGreaterThan(persisted);
+        }
+    }
+
+    @Test
+    public void nextId_whenClockIsReal_idIsSafeAsJavaScriptNumber() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID);
+        assertThat(generator.nextId()).isLessThan(1L << 53);
+    }
+
+    @Test
+    public void constructor_whenNodeIdIsOutOfRange_throwsIllegalArgumentException() {
+        assertThatThrownBy(() -> new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimeOrderedIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void nextId_whenCalledFromManyThreads_idsAreUnique() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1);
+        int threads = 16;
+        int idsPerThread = 20_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long last = 0;
+                    for (int i = 0; i < idsPerThread; i++) {
+                        long id = generator.nextId();
+                        if (id <= last) {
+                            return false;
+                        }
+                        last = id;
+                        ids.add(id);
+                    }
+                    return true;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(ids).hasSize(threads * idsPerThread);
+    }
+}
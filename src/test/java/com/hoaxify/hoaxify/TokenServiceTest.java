@@ -0,0 +1,102 @@
+package com.hoaxify.hoaxify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.TokenService;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenServiceTest {
+
+    AppConfiguration appConfiguration;
+
+    TokenService tokenService;
+
+    @BeforeEach
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.getAuth().setTokenSecret("test-secret-of-at-least-32-bytes!");
+        tokenService = new TokenService(appConfiguration, new ObjectMapper());
+    }
+
+    private AuthenticatedUser createUser() {
+        return new AuthenticatedUser(5, "user1", "test-display", 3);
+    }
+
+    @Test
+    public void verify_whenTokenIsIssuedForUser_returnsUserWithClaims() {
+        String token = tokenService.issue(createUser());
+        AuthenticatedUser user = tokenService.verify(token);
+        assertThat(user.getId()).isEqualTo(5);
+        assertThat(user.getUsername()).isEqualTo("user1");
+        assertThat(user.getDisplayName()).isEqualTo("test-display");
+        assertThat(user.getCredentialVersion()).isEqualTo(3);
+    }
+
+    @Test
+    public void verify_whenTokenIsIssued_tokenDoesNotContainPassword() {
+        String token = tokenService.issue(createUser());
+        String payload = new String(Base64.getUrlDecoder().decode(token.split("\\.")[0]), StandardCharsets.UTF_8);
+        assertThat(payload).doesNotContain("password").doesNotContain("P4ssword");
+    }
+
+    @Test
+    public void verify_whenPayloadIsTampered_returnsNull() {
+        String token = tokenService.issue(createUser());
+        String otherPayload = tokenService.issue(new AuthenticatedUser(6, "user2", "test-display", 0)).split("\\.")[0];
+        assertThat(tokenService.verify(otherPayload + "." + token.split("\\.")[1])).isNull();
+    }
+
+    @Test
+    public void verify_whenTokenIsSignedWithAnotherSecret_returnsNull() {
+        AppConfiguration otherConfiguration = new AppConfiguration();
+        otherConfiguration.getAuth().setTokenSecret("other-secret-of-at-least-32-bytes");
+        String token = new TokenService(otherConfiguration, new ObjectMapper()).issue(createUser());
+        assertThat(tokenService.verify(token)).isNull();
+    }
+
+    @Test
+    public void verify_whenTokenIsExpired_returnsNull() {
+        appConfiguration.getAuth().setTokenValidity(Duration.ofMillis(-1));
+        tokenService = new TokenService(appConfiguration, new ObjectMapper());
+        assertThat(tokenService.verify(tokenService.issue(createUser()))).isNull();
+    }
+
+    @Test
+    public void verify_whenTokenIsMalformed_returnsNull() {
+        assertThat(tokenService.verify("not-a-token")).isNull();
+        assertThat(tokenService.verify("abc.%%%")).isNull();
+    }
+
+    @Test
+    public void tokenService_whenSecretIsShorterThan32Bytes_throwsIllegalStateException() {
+        appConfiguration.getAuth().setTokenSecret("short-secret");
+        assertThatThrownBy(() -> new TokenService(appConfiguration, new ObjectMapper()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("at least 32 bytes");
+    }
+
+    @Test
+    public void tokenService_whenClusteredWithoutSecret_throwsIllegalStateException() {
+        appConfiguration.getAuth().setTokenSecret(null);
+        appConfiguration.setClustered(true);
+        assertThatThrownBy(() -> new TokenService(appConfiguration, new ObjectMapper()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("hoaxify.auth.token-secret must be set");
+    }
+
+    @Test
+    public void verify_whenSingleNodeHasNoSecret_verifiesItsOwnTokens() {
+        appConfiguration.getAuth().setTokenSecret(null);
+        tokenService = new TokenService(appConfiguration, new ObjectMapper());
+        assertThat(tokenService.verify(tokenService.issue(createUser()))).isNotNull();
+    }
+}
@@ -1,8 +1,14 @@
 package com.hoaxify.hoaxify;
 
 import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.TokenService;
 import com.hoaxify.hoaxify.error.ApiError;
+import com.hoaxify.hoaxify.file.FileContentRepository;
+import com.hoaxify.hoaxify.file.FileJobQueue;
+import com.hoaxify.hoaxify.file.StorageBackend;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
 import com.hoaxify.hoaxify.shared.GenericResponse;
+import com.hoaxify.hoaxify.user.FollowRepository;
 import com.hoaxify.hoaxify.user.User;
 import com.hoaxify.hoaxify.user.UserRepository;
 import com.hoaxify.hoaxify.user.UserService;
@@ -26,9 +32,14 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -48,6 +59,17 @@ public class UserControllerTest {
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    FileJobQueue fileJobQueue;
+    @Autowired
+    StorageBackend storageBackend;
+    @Autowired
+    FileContentRepository fileContentRepository;
+    @Autowired
+    TokenService tokenService;
+    @Autowired
+    FollowRepository followRepository;
+
     public <T> ResponseEntity<T> postSignup(Object request, Class<T> response) {
         return testRestTemplate.postForEntity(API_1_0_USERS, request, response);
 
@@ -72,6 +94,11 @@ public class UserControllerTest {
         return testRestTemplate.exchange(path, HttpMethod.PUT, requestEntity, response);
     }
 
+    public <T> ResponseEntity<T> follow(String username, HttpMethod method, Class<T> response) {
+        String path = API_1_0_USERS + "/" + username + "/follow";
+        return testRestTemplate.exchange(path, method, null, response);
+    }
+
     private void authenticate(String username) {
         testRestTemplate
                 .getRestTemplate()
@@ -79,6 +106,16 @@ public class UserControllerTest {
                 .add(new BasicAuthenticationInterceptor(username, "P4ssword"));
     }
 
+    private void authenticateWithToken(String token) {
+        testRestTemplate
+                .getRestTemplate()
+                .getInterceptors()
+                .add((request, body, execution) -> {
+                    request.getHeaders().setBearerAuth(token);
+                    return execution.execute(request, body);
+                });
+    }
+
     private UpdateUserVM createValidUserUpdateVM() {
         UpdateUserVM updateUser = new UpdateUserVM();
         updateUser.setDisplayName("newDisplayName");
@@ -93,12 +130,15 @@ public class UserControllerTest {
 
     @BeforeEach
     public void cleanup() {
+        followRepository.deleteAll();
         userRepository.deleteAll();
+        fileContentRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
     @AfterEach
     public void cleanDirectory() throws IOException {
+        followRepository.deleteAll();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
@@ -464,6 +504,33 @@ public class UserControllerTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void updateUser_whenCalledOutsideOfWebRequest_displayNameUpdatedInDatabase() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        userService.update(user.getId(), createValidUserUpdateVM());
+        User inDB = userRepository.findByUsername("user1");
+        assertThat(inDB.getDisplayName()).isEqualTo("newDisplayName");
+    }
+
+    @Test
+    public void putUser_whenValidRequestBodyFromUserWithToken_receiveOk() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticateWithToken(tokenService.issue(new AuthenticatedUser(user)));
+        HttpEntity<UpdateUserVM> requestEntity = new HttpEntity<>(createValidUserUpdateVM());
+        ResponseEntity<Object> response = putUser(user.getId(), requestEntity, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void putUser_whenTokenUserSendsUpdateForAnotherUser_receiveForbidden() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticateWithToken(tokenService.issue(new AuthenticatedUser(user)));
+        long anotherUserId = user.getId() + 123;
+        HttpEntity<UpdateUserVM> requestEntity = new HttpEntity<>(createValidUserUpdateVM());
+        ResponseEntity<Object> response = putUser(anotherUserId, requestEntity, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
     @Test
     public void putUser_whenValidRequestBodyFromAuthorizedUser_displayNameUpdated() {
         User user = userService.save(TestUtil.createValidUser("user1"));
@@ -516,10 +583,7 @@ public class UserControllerTest {
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
         String storedImageName = response.getBody().getImage();
-        String profilePicturePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
-
-        File storedImage = new File(profilePicturePath);
-        assertThat(storedImage.exists()).isTrue();
+        assertThat(storageBackend.find(appConfiguration.getProfileImagesFolder(), storedImageName)).isNotNull();
     }
 
     @Test
@@ -619,12 +683,101 @@ public class UserControllerTest {
         HttpEntity<UpdateUserVM> requestEntity = new HttpEntity<>(updateUser);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
-        putUser(user.getId(), requestEntity, UserVM.class);
+        UpdateUserVM otherImageUpdate = createValidUserUpdateVM();
+        otherImageUpdate.setImage(readFileToBase64("profile.png"));
+        putUser(user.getId(), new HttpEntity<>(otherImageUpdate), UserVM.class);
+        fileJobQueue.runDueJobs();
 
         String storedImageName = response.getBody().getImage();
-        String profilePicturePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
-        File storedImage = new File(profilePicturePath);
-        assertThat(storedImage.exists()).isFalse();
+        assertThat(storageBackend.find(appConfiguration.getProfileImagesFolder(), storedImageName)).isNull();
+    }
+
+    @Test
+    public void putUser_whenSameImageIsUploadedAgain_imageIsKeptAndStoredOnce() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        UpdateUserVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(readFileToBase64("test-jpg.jpg"));
+        HttpEntity<UpdateUserVM> requestEntity = new HttpEntity<>(updateUser);
+        ResponseEntity<UserVM> first = putUser(user.getId(), requestEntity, UserVM.class);
+        ResponseEntity<UserVM> second = putUser(user.getId(), requestEntity, UserVM.class);
+        fileJobQueue.runDueJobs();
+
+        assertThat(second.getBody().getImage()).isEqualTo(first.getBody().getImage());
+        assertThat(storageBackend.find(appConfiguration.getProfileImagesFolder(), first.getBody().getImage())).isNotNull();
+        assertThat(fileContentRepository.findRefCount(appConfiguration.getProfileImagesFolder(), first.getBody().getImage())).contains(1);
+    }
+
+    @Test
+    public void followUser_whenUnauthorizedUserSendsTheRequest_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser("user1"));
+        ResponseEntity<Object> response = follow("user1", HttpMethod.POST, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void followUser_whenAuthorizedUserFollowsAnotherUser_followIsSavedToDatabase() {
+        User follower = userService.save(TestUtil.createValidUser("user1"));
+        User followee = userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        ResponseEntity<GenericResponse> response = follow("user2", HttpMethod.POST, GenericResponse.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(followRepository.findByFollowerIdAndFolloweeId(follower.getId(), followee.getId())).isNotNull();
+    }
+
+    @Test
+    public void followUser_whenAlreadyFollowing_followIsSavedOnce() {
+        userService.save(TestUtil.createValidUser("user1"));
+        userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        follow("user2", HttpMethod.POST, Object.class);
+        ResponseEntity<Object> response = follow("user2", HttpMethod.POST, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(followRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void followUser_whenSameFollowIsSentConcurrently_everyRequestSucceedsAndFollowIsSavedOnce() throws Exception {
+        userService.save(TestUtil.createValidUser("user1"));
+        userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<HttpStatus>> statuses = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            statuses.add(executor.submit(() -> follow("user2", HttpMethod.POST, Object.class).getStatusCode()));
+        }
+        executor.shutdown();
+        for (Future<HttpStatus> status : statuses) {
+            assertThat(status.get(30, TimeUnit.SECONDS)).isEqualTo(HttpStatus.OK);
+        }
+        assertThat(followRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void followUser_whenUserFollowsThemselves_receiveBadRequest() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        ResponseEntity<Object> response = follow("user1", HttpMethod.POST, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void followUser_whenFolloweeDoesNotExist_receiveNotFound() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        ResponseEntity<Object> response = follow("unknown-user", HttpMethod.POST, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
     }
 
+    @Test
+    public void unfollowUser_whenFollowing_followIsRemovedFromDatabase() {
+        userService.save(TestUtil.createValidUser("user1"));
+        userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        follow("user2", HttpMethod.POST, Object.class);
+        ResponseEntity<Object> response = follow("user2", HttpMethod.DELETE, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(followRepository.count()).isEqualTo(0);
+    }
 }
@@ -0,0 +1,103 @@
+package com.hoaxify.hoaxify;
+
+import com.hoaxify.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoaxify.configuration.VerifiedCredentialCache;
+import com.hoaxify.hoaxify.shared.AuthenticatedUser;
+import com.hoaxify.hoaxify.user.UserChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VerifiedCredentialCacheTest {
+
+    AppConfiguration appConfiguration;
+
+    MeterRegistry meterRegistry;
+
+    VerifiedCredentialCache verifiedCredentialCache;
+
+    @BeforeEach
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedCredentialCache = new VerifiedCredentialCache(appConfiguration, meterRegistry);
+    }
+
+    private AuthenticatedUser createPrincipal(String username) {
+        return new AuthenticatedUser(1, username, "test-display", 0);
+    }
+
+    private double countOf(String result) {
+        return meterRegistry.counter("hoaxify.auth.credential.cache", "result", result).count();
+    }
+
+    @Test
+    public void keyOf_whenCredentialsProvided_doesNotContainPlaintextPassword() {
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        assertThat(key.getPasswordDigest()).doesNotContain("P4ssword");
+        assertThat(key.toString()).doesNotContain("P4ssword");
+    }
+
+    @Test
+    public void keyOf_whenSeparatorMovesBetweenUsernameAndPassword_returnsDifferentKeys() {
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1:a", "P4ssword");
+        VerifiedCredentialCache.Key otherKey = verifiedCredentialCache.keyOf("user1", "a:P4ssword");
+        assertThat(key).isNotEqualTo(otherKey);
+    }
+
+    @Test
+    public void keyOf_whenPasswordsDiffer_returnsDifferentKeys() {
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        VerifiedCredentialCache.Key otherKey = verifiedCredentialCache.keyOf("user1", "P4ssword2");
+        assertThat(key).isNotEqualTo(otherKey);
+    }
+
+    @Test
+    public void get_whenCredentialsWereStored_returnsPrincipalAndCountsHit() {
+        AuthenticatedUser user = createPrincipal("user1");
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        verifiedCredentialCache.put(key, user);
+        assertThat(verifiedCredentialCache.get(key)).isSameAs(user);
+        assertThat(countOf("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void get_whenCredentialsWereNotStored_returnsNullAndCountsMiss() {
+        assertThat(verifiedCredentialCache.get(verifiedCredentialCache.keyOf("user1", "P4ssword"))).isNull();
+        assertThat(countOf("miss")).isEqualTo(1);
+    }
+
+    @Test
+    public void get_whenEntryIsExpired_returnsNull() {
+        appConfiguration.getAuth().setCredentialCacheTtl(Duration.ofMillis(-1));
+        verifiedCredentialCache = new VerifiedCredentialCache(appConfiguration, meterRegistry);
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        verifiedCredentialCache.put(key, createPrincipal("user1"));
+        assertThat(verifiedCredentialCache.get(key)).isNull();
+    }
+
+    @Test
+    public void put_whenCacheIsFull_evictsLeastRecentlyUsedEntry() {
+        appConfiguration.getAuth().setCredentialCacheSize(2);
+        verifiedCredentialCache = new VerifiedCredentialCache(appConfiguration, meterRegistry);
+        VerifiedCredentialCache.Key first = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        verifiedCredentialCache.put(first, createPrincipal("user1"));
+        verifiedCredentialCache.put(verifiedCredentialCache.keyOf("user2", "P4ssword"), createPrincipal("user2"));
+        verifiedCredentialCache.put(verifiedCredentialCache.keyOf("user3", "P4ssword"), createPrincipal("user3"));
+        assertThat(verifiedCredentialCache.size()).isEqualTo(2);
+        assertThat(verifiedCredentialCache.get(first)).isNull();
+    }
+
+    @Test
+    public void onUserChanged_whenUserHasCachedCredentials_removesEntries() {
+        VerifiedCredentialCache.Key key = verifiedCredentialCache.keyOf("user1", "P4ssword");
+        verifiedCredentialCache.put(key, createPrincipal("user1"));
+        verifiedCredentialCache.onUserChanged(new UserChangedEvent(1, "user1"));
+        assertThat(verifiedCredentialCache.get(key)).isNull();
+    }
+}